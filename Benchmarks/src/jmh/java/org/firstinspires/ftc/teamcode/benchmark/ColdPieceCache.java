@@ -0,0 +1,19 @@
+package org.firstinspires.ftc.teamcode.benchmark;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryPieceCache;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Empties the process-wide trajectory piece cache before every call of a benchmark that takes it, so
+ * the benchmark measures path generation and not cache hits.
+ */
+@State(Scope.Thread)
+public class ColdPieceCache {
+    @Setup(Level.Invocation)
+    public void clear() {
+        TrajectoryPieceCache.clear();
+    }
+}
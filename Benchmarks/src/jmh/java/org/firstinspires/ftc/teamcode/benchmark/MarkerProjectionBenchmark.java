@@ -0,0 +1,64 @@
+package org.firstinspires.ftc.teamcode.benchmark;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.geometry.Vector2d;
+import com.acmerobotics.roadrunner.trajectory.MarkerCallback;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build time of a fixed sequence as temporal, displacement and spatial markers are added to it. The
+ * zero-marker case is the cost of the paths alone; the rest is marker resolution and projection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MarkerProjectionBenchmark {
+    private static final MarkerCallback NOOP = () -> {
+    };
+
+    @Param({"0", "10", "50"})
+    public int markers;
+
+    @Benchmark
+    public TrajectorySequence build(ColdPieceCache pieceCache) {
+        TrajectorySequenceBuilder builder = Routes.DRIVE.trajectorySequenceBuilder(new Pose2d(32, -64, Math.toRadians(90)))
+                .splineToSplineHeading(new Pose2d(16, -58, Math.toRadians(90)), Math.toRadians(135))
+                .splineToSplineHeading(new Pose2d(12, -30, Math.toRadians(180)), Math.toRadians(90))
+                .waitSeconds(0.5)
+                .splineTo(new Vector2d(33, -5.5), Math.toRadians(45))
+                .turn(Math.toRadians(90))
+                .lineToLinearHeading(new Pose2d(60, -12, Math.toRadians(0)))
+                .waitSeconds(0.5)
+                .lineToLinearHeading(new Pose2d(33, -5.5, Math.toRadians(135)));
+
+        // spread evenly over roughly the length and duration of the sequence above
+        for (int i = 0; i < markers; i++) {
+            double fraction = (double) i / markers;
+
+            switch (i % 3) {
+                case 0:
+                    builder.addTemporalMarker(fraction * 8, NOOP);
+                    break;
+                case 1:
+                    builder.addDisplacementMarker(fraction * 150, NOOP);
+                    break;
+                default:
+                    builder.addSpatialMarker(new Vector2d(12 + fraction * 48, -60 + fraction * 50), NOOP);
+                    break;
+            }
+        }
+
+        return builder.build();
+    }
+}
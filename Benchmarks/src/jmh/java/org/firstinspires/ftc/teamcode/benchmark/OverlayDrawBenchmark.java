@@ -0,0 +1,96 @@
+package org.firstinspires.ftc.teamcode.benchmark;
+
+import com.acmerobotics.dashboard.canvas.Canvas;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.SequenceSegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TrajectorySegment;
+import org.firstinspires.ftc.teamcode.util.DashboardUtil;
+import org.firstinspires.ftc.teamcode.util.PoseHistory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of drawing one dashboard frame for the C2-D3 route: every segment, a full pose history and the
+ * robot, the same calls the runner's publisher makes per packet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OverlayDrawBenchmark {
+    private TrajectorySequence sequence;
+    private PoseHistory poseHistory;
+    private double[] historyXPoints;
+    private double[] historyYPoints;
+    private Pose2d poseEstimate;
+
+    @Setup
+    public void setup() {
+        sequence = Routes.build("C2_D3");
+
+        poseHistory = new PoseHistory(TrajectorySequenceRunner.POSE_HISTORY_LIMIT);
+        double duration = sequence.duration();
+        for (int i = 0; i < poseHistory.capacity(); i++) {
+            double t = duration * i / poseHistory.capacity();
+            poseHistory.add(poseAt(t), t);
+        }
+
+        historyXPoints = new double[poseHistory.capacity()];
+        historyYPoints = new double[poseHistory.capacity()];
+
+        poseEstimate = poseAt(duration / 2);
+    }
+
+    private Pose2d poseAt(double t) {
+        for (int i = 0; i < sequence.size(); i++) {
+            SequenceSegment segment = sequence.get(i);
+            if (t <= segment.getDuration() && segment instanceof TrajectorySegment) {
+                return ((TrajectorySegment) segment).getTrajectory().get(t);
+            } else if (t <= segment.getDuration()) {
+                return segment.getStartPose();
+            }
+
+            t -= segment.getDuration();
+        }
+
+        return sequence.end();
+    }
+
+    @Benchmark
+    public TelemetryPacket draw() {
+        TelemetryPacket packet = new TelemetryPacket();
+        Canvas fieldOverlay = packet.fieldOverlay();
+
+        for (int i = 0; i < sequence.size(); i++) {
+            SequenceSegment segment = sequence.get(i);
+
+            if (segment instanceof TrajectorySegment) {
+                fieldOverlay.setStrokeWidth(1);
+                fieldOverlay.setStroke(TrajectorySequenceRunner.COLOR_INACTIVE_TRAJECTORY);
+
+                DashboardUtil.drawSampledPath(fieldOverlay, ((TrajectorySegment) segment).getTrajectory().getPath());
+            } else {
+                Pose2d pose = segment.getStartPose();
+
+                fieldOverlay.setFill(TrajectorySequenceRunner.COLOR_INACTIVE_TURN);
+                fieldOverlay.fillCircle(pose.getX(), pose.getY(), 2);
+            }
+        }
+
+        fieldOverlay.setStroke("#3F51B5");
+        DashboardUtil.drawPoseHistory(fieldOverlay, poseHistory, historyXPoints, historyYPoints);
+        DashboardUtil.drawRobot(fieldOverlay, poseEstimate);
+
+        return packet;
+    }
+}
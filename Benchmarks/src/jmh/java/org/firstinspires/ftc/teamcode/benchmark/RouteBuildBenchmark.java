@@ -0,0 +1,62 @@
+package org.firstinspires.ftc.teamcode.benchmark;
+
+import com.acmerobotics.roadrunner.trajectory.MarkerCallback;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Init-time cost of each autonomous route: generating it live from scratch, generating it with every
+ * piece already in the trajectory piece cache (a route built earlier in the same app run), and reading
+ * it back from the binary cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RouteBuildBenchmark {
+    @Param({"C2_D3", "C2_B3", "D2_D3", "B2_B3", "D2_D2", "B2_B2", "C2_D2", "C2_B2"})
+    public String route;
+
+    private byte[] cached;
+    private List<MarkerCallback> callbacks;
+
+    @Setup
+    public void setup() throws IOException {
+        TrajectorySequence sequence = Routes.build(route);
+        callbacks = Routes.callbacks(sequence);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TrajectorySequenceCache.write(new DataOutputStream(bytes), sequence, 0, callbacks);
+        cached = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public TrajectorySequence build(ColdPieceCache pieceCache) {
+        return Routes.build(route);
+    }
+
+    @Benchmark
+    public TrajectorySequence buildFromPieceCache() {
+        return Routes.build(route);
+    }
+
+    @Benchmark
+    public TrajectorySequence loadFromCache() {
+        return TrajectorySequenceCache.read(ByteBuffer.wrap(cached), 0, callbacks);
+    }
+}
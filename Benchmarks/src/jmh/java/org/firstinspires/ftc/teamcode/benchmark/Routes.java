@@ -0,0 +1,81 @@
+package org.firstinspires.ftc.teamcode.benchmark;
+
+import com.acmerobotics.roadrunner.trajectory.MarkerCallback;
+import com.acmerobotics.roadrunner.trajectory.TrajectoryMarker;
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+import org.firstinspires.ftc.teamcode.AutonomousTrajectories;
+import org.firstinspires.ftc.teamcode.IntakeTool;
+import org.firstinspires.ftc.teamcode.WristTool;
+import org.firstinspires.ftc.teamcode.drive.SampleMecanumDrive;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the real autonomous routes against hardware that does nothing.
+ */
+final class Routes {
+    static final SampleMecanumDrive DRIVE = new SampleMecanumDrive();
+    static final DcMotor MOTOR = new DcMotor() {
+        @Override
+        public void setTargetPosition(int position) {
+        }
+
+        @Override
+        public void setMode(RunMode mode) {
+        }
+
+        @Override
+        public void setPower(double power) {
+        }
+    };
+    static final WristTool WRIST = new WristTool();
+    static final IntakeTool INTAKE = new IntakeTool();
+
+    private Routes() {
+    }
+
+    static TrajectorySequence build(String route) {
+        switch (route) {
+            case "C2_D3":
+                return AutonomousTrajectories.trajectory_C2_D3(DRIVE, MOTOR, MOTOR, WRIST, INTAKE);
+            case "C2_B3":
+                return AutonomousTrajectories.trajectory_C2_B3(DRIVE, MOTOR, MOTOR, WRIST, INTAKE);
+            case "D2_D3":
+                return AutonomousTrajectories.trajectory_D2_D3(DRIVE, MOTOR, MOTOR, WRIST, INTAKE);
+            case "B2_B3":
+                return AutonomousTrajectories.trajectory_B2_B3(DRIVE, MOTOR, MOTOR, WRIST, INTAKE);
+            case "D2_D2":
+                return AutonomousTrajectories.trajectory_D2_D2(DRIVE, MOTOR, MOTOR, WRIST, INTAKE);
+            case "B2_B2":
+                return AutonomousTrajectories.trajectory_B2_B2(DRIVE, MOTOR, MOTOR, WRIST, INTAKE);
+            case "C2_D2":
+                return AutonomousTrajectories.trajectory_C2_D2(DRIVE, MOTOR, MOTOR, WRIST, INTAKE);
+            case "C2_B2":
+                return AutonomousTrajectories.trajectory_C2_B2(DRIVE, MOTOR, MOTOR, WRIST, INTAKE);
+            default:
+                throw new IllegalArgumentException("Unknown route " + route);
+        }
+    }
+
+    /**
+     * Every distinct marker callback in the sequence, in firing order, for writing it to the cache.
+     */
+    static List<MarkerCallback> callbacks(TrajectorySequence sequence) {
+        Set<MarkerCallback> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<MarkerCallback> callbacks = new ArrayList<>();
+
+        for (int i = 0; i < sequence.size(); i++) {
+            for (TrajectoryMarker marker : sequence.get(i).getSortedMarkers()) {
+                if (seen.add(marker.getCallback())) callbacks.add(marker.getCallback());
+            }
+        }
+
+        return callbacks;
+    }
+}
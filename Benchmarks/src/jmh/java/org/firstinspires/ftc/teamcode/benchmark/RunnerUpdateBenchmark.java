@@ -0,0 +1,53 @@
+package org.firstinspires.ftc.teamcode.benchmark;
+
+import com.acmerobotics.roadrunner.drive.DriveSignal;
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+
+import org.firstinspires.ftc.teamcode.drive.SampleMecanumDrive;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one control tick of the trajectory sequence runner, following the C2-D3 route on the wall
+ * clock. The route is restarted whenever it finishes, so ticks land in trajectories, turns and waits in
+ * the same proportion as on the field.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RunnerUpdateBenchmark {
+    private TrajectorySequence sequence;
+    private TrajectorySequenceRunner runner;
+
+    private final Pose2d velocity = new Pose2d();
+
+    @Setup
+    public void setup() {
+        sequence = Routes.build("C2_D3");
+
+        TabulatedHolonomicPIDVAFollower follower = new TabulatedHolonomicPIDVAFollower(
+                SampleMecanumDrive.TRANSLATIONAL_PID, SampleMecanumDrive.TRANSLATIONAL_PID, SampleMecanumDrive.HEADING_PID,
+                new Pose2d(0.5, 0.5, Math.toRadians(5.0)), 0.5
+        );
+        runner = new TrajectorySequenceRunner(follower, SampleMecanumDrive.HEADING_PID);
+    }
+
+    @Benchmark
+    public DriveSignal update() {
+        if (!runner.isBusy()) {
+            runner.followTrajectorySequenceAsync(sequence);
+        }
+
+        return runner.update(sequence.start(), velocity);
+    }
+}
@@ -0,0 +1,79 @@
+package org.firstinspires.ftc.teamcode.benchmark;
+
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.SequenceSegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TrajectorySegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one follower target: the pose, velocity and acceleration at a time on the longest
+ * trajectory of the C2-D3 route, evaluated analytically like HolonomicPIDVAFollower does and looked
+ * up in a {@link TrajectoryTable} like TabulatedHolonomicPIDVAFollower does. Both walk the same
+ * pseudo-random times over the whole trajectory, so path segment lookups aren't favoured by order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrajectoryLookupBenchmark {
+    private static final int TIMES = 1024; // must be a power of two
+
+    private Trajectory trajectory;
+    private TrajectoryTable table;
+
+    private final double[] times = new double[TIMES];
+    private final double[] state = new double[TrajectoryTable.STATE_SIZE];
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        TrajectorySequence sequence = Routes.build("C2_D3");
+
+        for (int i = 0; i < sequence.size(); i++) {
+            SequenceSegment segment = sequence.get(i);
+            if (segment instanceof TrajectorySegment
+                    && (trajectory == null || segment.getDuration() > trajectory.duration())) {
+                trajectory = ((TrajectorySegment) segment).getTrajectory();
+            }
+        }
+
+        table = TrajectoryTable.sample(trajectory);
+
+        Random random = new Random(0);
+        for (int i = 0; i < TIMES; i++) {
+            times[i] = random.nextDouble() * trajectory.duration();
+        }
+    }
+
+    private double nextTime() {
+        return times[cursor++ & (TIMES - 1)];
+    }
+
+    @Benchmark
+    public void analytic(Blackhole blackhole) {
+        double t = nextTime();
+
+        blackhole.consume(trajectory.get(t));
+        blackhole.consume(trajectory.velocity(t));
+        blackhole.consume(trajectory.acceleration(t));
+    }
+
+    @Benchmark
+    public double[] table() {
+        table.get(nextTime(), state);
+
+        return state;
+    }
+}
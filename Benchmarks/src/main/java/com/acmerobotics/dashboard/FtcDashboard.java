@@ -0,0 +1,27 @@
+package com.acmerobotics.dashboard;
+
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+
+/**
+ * JVM stand-in for the dashboard server, which only exists on the robot. Packets are counted and dropped.
+ */
+public class FtcDashboard {
+    private static final FtcDashboard INSTANCE = new FtcDashboard();
+
+    private volatile long packetsSent;
+
+    public static FtcDashboard getInstance() {
+        return INSTANCE;
+    }
+
+    public void setTelemetryTransmissionInterval(int transmissionInterval) {
+    }
+
+    public void sendTelemetryPacket(TelemetryPacket telemetryPacket) {
+        packetsSent++;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+}
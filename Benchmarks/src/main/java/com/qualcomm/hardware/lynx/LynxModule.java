@@ -0,0 +1,25 @@
+package com.qualcomm.hardware.lynx;
+
+/**
+ * JVM stand-in for the SDK's hub, covering only what BulkReadCache uses.
+ */
+public class LynxModule {
+    public enum BulkCachingMode {
+        OFF,
+        MANUAL,
+        AUTO
+    }
+
+    public static class BulkData {
+    }
+
+    public void setBulkCachingMode(BulkCachingMode mode) {
+    }
+
+    public void clearBulkCache() {
+    }
+
+    public BulkData getBulkData() {
+        return new BulkData();
+    }
+}
@@ -0,0 +1,19 @@
+package com.qualcomm.robotcore.hardware;
+
+/**
+ * JVM stand-in for the SDK's motor interface, covering only what the autonomous routes use.
+ */
+public interface DcMotor {
+    enum RunMode {
+        RUN_WITHOUT_ENCODER,
+        RUN_USING_ENCODER,
+        RUN_TO_POSITION,
+        STOP_AND_RESET_ENCODER
+    }
+
+    void setTargetPosition(int position);
+
+    void setMode(RunMode mode);
+
+    void setPower(double power);
+}
@@ -0,0 +1,13 @@
+package com.qualcomm.robotcore.hardware;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in for the SDK's hardware map. There's no hardware off the robot, so it's always empty.
+ */
+public class HardwareMap {
+    public <T> List<T> getAll(Class<? extends T> classOrInterface) {
+        return new ArrayList<>();
+    }
+}
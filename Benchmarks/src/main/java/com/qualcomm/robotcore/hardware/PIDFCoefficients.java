@@ -0,0 +1,18 @@
+package com.qualcomm.robotcore.hardware;
+
+/**
+ * JVM stand-in for the SDK's PIDF coefficients, so DriveConstants compiles unchanged.
+ */
+public class PIDFCoefficients {
+    public double p;
+    public double i;
+    public double d;
+    public double f;
+
+    public PIDFCoefficients(double p, double i, double d, double f) {
+        this.p = p;
+        this.i = i;
+        this.d = d;
+        this.f = f;
+    }
+}
@@ -0,0 +1,9 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * JVM stand-in for the intake servo; marker callbacks that move it do nothing.
+ */
+public class IntakeTool {
+    public void moveAbsolute(double target) {
+    }
+}
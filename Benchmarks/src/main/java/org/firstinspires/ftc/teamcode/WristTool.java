@@ -0,0 +1,9 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * JVM stand-in for the wrist servo; marker callbacks that move it do nothing.
+ */
+public class WristTool {
+    public void moveAbsolute(double target) {
+    }
+}
@@ -0,0 +1,32 @@
+package org.firstinspires.ftc.teamcode.drive;
+
+import com.acmerobotics.roadrunner.control.PIDCoefficients;
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryAccelerationConstraint;
+import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryVelocityConstraint;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceBuilder;
+
+/**
+ * JVM stand-in for the drive: builds trajectory sequences exactly like the real one, without any
+ * hardware. The gains and constraints come from TeamCode's MecanumDriveConfig, like the real drive's.
+ */
+public class SampleMecanumDrive {
+    public static PIDCoefficients HEADING_PID = MecanumDriveConfig.HEADING_PID;
+    public static PIDCoefficients TRANSLATIONAL_PID = MecanumDriveConfig.TRANSLATIONAL_PID;
+
+    public TrajectorySequenceBuilder trajectorySequenceBuilder(Pose2d startPose) {
+        return MecanumDriveConfig.trajectorySequenceBuilder(startPose);
+    }
+
+    public void setPoseEstimate(Pose2d pose) {
+    }
+
+    public static TrajectoryVelocityConstraint getVelocityConstraint(double maxVel, double maxAngularVel, double trackWidth) {
+        return MecanumDriveConfig.getVelocityConstraint(maxVel, maxAngularVel, trackWidth);
+    }
+
+    public static TrajectoryAccelerationConstraint getAccelerationConstraint(double maxAccel) {
+        return MecanumDriveConfig.getAccelerationConstraint(maxAccel);
+    }
+}
@@ -0,0 +1,21 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceBuilder;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * JVM stand-in for the asset loader. There are no assets or cache files off the robot, so this always
+ * takes the live-build path, which is the one worth measuring.
+ */
+public class AssetsTrajectoryManager {
+    public static TrajectorySequence loadOrBuild(
+            String name,
+            Supplier<TrajectorySequenceBuilder> factory,
+            Function<TrajectorySequenceBuilder, TrajectorySequenceBuilder> route
+    ) {
+        return route.apply(factory.get().compileLookupTables()).build();
+    }
+}
@@ -0,0 +1,18 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for the robot's log folder; logs go to the system temp directory instead.
+ */
+public class LoggingUtil {
+    public static final File ROAD_RUNNER_FOLDER =
+            new File(System.getProperty("java.io.tmpdir"), "RoadRunner");
+
+    public static File getLogFile(String name) {
+        //noinspection ResultOfMethodCallIgnored
+        ROAD_RUNNER_FOLDER.mkdirs();
+
+        return new File(ROAD_RUNNER_FOLDER, name);
+    }
+}
@@ -0,0 +1,91 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.trajectory.MarkerCallback;
+import com.acmerobotics.roadrunner.trajectory.TrajectoryMarker;
+
+import org.firstinspires.ftc.teamcode.drive.SampleMecanumDrive;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrajectorySequenceCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SampleMecanumDrive drive = new SampleMecanumDrive();
+
+    private int routeApplications;
+    private int markersReached;
+
+    private TrajectorySequenceBuilder builder() {
+        return drive.trajectorySequenceBuilder(new Pose2d(0, 0, 0));
+    }
+
+    // every application makes new callback objects, like the autonomous routes' lambdas over their tools
+    private TrajectorySequenceBuilder route(TrajectorySequenceBuilder builder) {
+        routeApplications++;
+
+        return builder
+                .forward(24)
+                .addDisplacementMarker(new MarkerCallback() {
+                    @Override
+                    public void onMarkerReached() {
+                        markersReached++;
+                    }
+                })
+                .turn(Math.toRadians(90))
+                .waitSeconds(0.5)
+                .addTemporalMarker(0.25, new MarkerCallback() {
+                    @Override
+                    public void onMarkerReached() {
+                        markersReached++;
+                    }
+                });
+    }
+
+    @Test
+    public void liveBuildIsCachedAndLoadedBack() {
+        File cacheFile = new File(folder.getRoot(), "route.tsq");
+
+        TrajectorySequence built = TrajectorySequenceCache.loadOrBuild(null, cacheFile, this::builder, this::route);
+        assertEquals("a cold load records and then builds", 2, routeApplications);
+        assertTrue("a live build writes the cache file", cacheFile.exists());
+
+        TrajectorySequence loaded = TrajectorySequenceCache.loadOrBuild(null, cacheFile, this::builder, this::route);
+        assertEquals("a warm load only records", 3, routeApplications);
+
+        assertEquals(built.size(), loaded.size());
+        assertEquals(built.duration(), loaded.duration(), 1e-9);
+        assertEquals(built.end().getX(), loaded.end().getX(), 1e-6);
+        assertEquals(built.end().getHeading(), loaded.end().getHeading(), 1e-6);
+
+        int markers = 0;
+        for (int i = 0; i < loaded.size(); i++) {
+            for (TrajectoryMarker marker : loaded.get(i).getSortedMarkers()) {
+                marker.getCallback().onMarkerReached();
+                markers++;
+            }
+        }
+
+        assertEquals(2, markers);
+        assertEquals("every loaded marker is attached to a live callback", 2, markersReached);
+    }
+
+    @Test
+    public void changedRouteIsRebuilt() {
+        File cacheFile = new File(folder.getRoot(), "route.tsq");
+
+        TrajectorySequenceCache.loadOrBuild(null, cacheFile, this::builder, this::route);
+        TrajectorySequence rebuilt = TrajectorySequenceCache.loadOrBuild(
+                null, cacheFile, this::builder, builder -> route(builder).forward(12));
+
+        assertEquals("a different input hash falls back to a live build", 4, routeApplications);
+        assertEquals(12, rebuilt.end().getY(), 1e-6);
+    }
+}
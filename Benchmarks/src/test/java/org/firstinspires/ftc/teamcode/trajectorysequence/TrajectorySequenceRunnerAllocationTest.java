@@ -0,0 +1,124 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.util.NanoClock;
+
+import org.firstinspires.ftc.teamcode.drive.SampleMecanumDrive;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_SIZE;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_HEADING;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_X;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Steady-state ticks of {@link TrajectorySequenceRunner#update(Pose2d, Pose2d, double[])} must not
+ * allocate. The test JVM runs without escape analysis (see build.gradle), so an allocation the JIT would
+ * optimize away on the desktop, but ART wouldn't on the robot, still counts.
+ */
+public class TrajectorySequenceRunnerAllocationTest {
+    private static final int TICKS = 10000;
+
+    // ticks that cross into the segment, where following it starts and its markers are fetched
+    private static final int WARMUP_TICKS = 10;
+
+    private static class FakeClock extends NanoClock {
+        double time;
+
+        @Override
+        public double seconds() {
+            return time;
+        }
+    }
+
+    private final SampleMecanumDrive drive = new SampleMecanumDrive();
+    private final FakeClock clock = new FakeClock();
+
+    private final TrajectorySequenceRunner runner = new TrajectorySequenceRunner(
+            new TabulatedHolonomicPIDVAFollower(
+                    SampleMecanumDrive.TRANSLATIONAL_PID, SampleMecanumDrive.TRANSLATIONAL_PID, SampleMecanumDrive.HEADING_PID,
+                    new Pose2d(0.5, 0.5, Math.toRadians(5.0)), 0.5, clock
+            ),
+            SampleMecanumDrive.HEADING_PID, clock
+    );
+
+    private final Pose2d pose = new Pose2d(0, 0, 0);
+    private final Pose2d velocity = new Pose2d();
+    private final double[] signal = new double[SIGNAL_SIZE];
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // runs the single segment of `sequence` for TICKS ticks spread over its first half
+    private long steadyStateBytes(TrajectorySequence sequence) {
+        double dt = sequence.duration() / 2 / (WARMUP_TICKS + TICKS);
+
+        runner.followTrajectorySequenceAsync(sequence);
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            clock.time += dt;
+            runner.update(pose, velocity, signal);
+        }
+
+        // the counter itself may allocate on its first call
+        allocatedBytes();
+
+        long before = allocatedBytes();
+        for (int i = 0; i < TICKS; i++) {
+            clock.time += dt;
+            assertTrue(runner.update(pose, velocity, signal));
+        }
+        long after = allocatedBytes();
+
+        assertTrue("still in the first segment", runner.isBusy());
+
+        return after - before;
+    }
+
+    // On JDK 8 getThreadAllocatedBytes(long) wraps the id and the result in arrays, so the pair of
+    // calls around the loop counts a few dozen bytes of its own. The smallest object is 16 bytes, so
+    // one allocation per tick would be at least 16 * TICKS bytes, far over this.
+    private static final long COUNTER_OVERHEAD = 128; // bytes
+
+    private static void assertAllocatesNothing(long bytes) {
+        assertTrue(bytes + " bytes allocated over " + TICKS + " ticks", bytes <= COUNTER_OVERHEAD);
+    }
+
+    @Test
+    public void trajectoryTicksAllocateNothing() {
+        TrajectorySequence sequence = drive.trajectorySequenceBuilder(pose)
+                .compileLookupTables()
+                .forward(48)
+                .build();
+
+        assertAllocatesNothing(steadyStateBytes(sequence));
+        assertTrue("the follower is driving forward", signal[SIGNAL_VEL_X] > 0);
+    }
+
+    @Test
+    public void turnTicksAllocateNothing() {
+        TrajectorySequence sequence = drive.trajectorySequenceBuilder(pose)
+                .turn(Math.toRadians(90))
+                .build();
+
+        assertAllocatesNothing(steadyStateBytes(sequence));
+        assertNotEquals("the turn is turning", 0.0, signal[SIGNAL_VEL_HEADING], 0.0);
+    }
+
+    @Test
+    public void waitTicksAllocateNothing() {
+        TrajectorySequence sequence = drive.trajectorySequenceBuilder(pose)
+                .waitSeconds(1)
+                .build();
+
+        assertAllocatesNothing(steadyStateBytes(sequence));
+        for (double value : signal) {
+            assertEquals(0.0, value, 0.0);
+        }
+    }
+}
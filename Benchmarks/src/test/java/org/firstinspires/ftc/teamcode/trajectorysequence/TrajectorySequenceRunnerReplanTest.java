@@ -0,0 +1,130 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.util.NanoClock;
+
+import org.firstinspires.ftc.teamcode.drive.SampleMecanumDrive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.firstinspires.ftc.teamcode.drive.DriveConstants.MAX_ACCEL;
+import static org.firstinspires.ftc.teamcode.drive.DriveConstants.MAX_ANG_VEL;
+import static org.firstinspires.ftc.teamcode.drive.DriveConstants.MAX_VEL;
+import static org.firstinspires.ftc.teamcode.drive.DriveConstants.TRACK_WIDTH;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_SIZE;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_HEADING;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_X;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_Y;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a simulated robot, which moves exactly as commanded, down a straight line and knocks it
+ * sideways once at cruise speed. Plans run inline on the loop thread and take {@link #PLAN_TIME} of the
+ * fake clock, so the swapped-in plan starts from a pose the robot has already moved on from.
+ */
+public class TrajectorySequenceRunnerReplanTest {
+    private static final double DT = 0.01; // s
+    private static final double PLAN_TIME = 0.08; // s, inside the default budget
+    private static final double BUMP_TIME = 1.5; // s, at cruise speed
+    private static final double BUMP = 8; // in, twice the default error threshold
+
+    private static class FakeClock extends NanoClock {
+        double time;
+
+        @Override
+        public double seconds() {
+            return time;
+        }
+    }
+
+    private final SampleMecanumDrive drive = new SampleMecanumDrive();
+    private final FakeClock clock = new FakeClock();
+
+    private final TrajectorySequenceRunner runner = new TrajectorySequenceRunner(
+            new TabulatedHolonomicPIDVAFollower(
+                    SampleMecanumDrive.TRANSLATIONAL_PID, SampleMecanumDrive.TRANSLATIONAL_PID, SampleMecanumDrive.HEADING_PID,
+                    new Pose2d(0.5, 0.5, Math.toRadians(5.0)), 0.5, clock
+            ),
+            SampleMecanumDrive.HEADING_PID, clock
+    );
+
+    private final double[] signal = new double[SIGNAL_SIZE];
+
+    private boolean replan;
+
+    @Before
+    public void enableReplanning() {
+        replan = TrajectorySequenceRunner.REPLAN;
+        TrajectorySequenceRunner.REPLAN = true;
+
+        runner.setReplanConstraints(
+                SampleMecanumDrive.getVelocityConstraint(MAX_VEL, MAX_ANG_VEL, TRACK_WIDTH),
+                SampleMecanumDrive.getAccelerationConstraint(MAX_ACCEL),
+                task -> {
+                    clock.time += PLAN_TIME;
+                    task.run();
+                }
+        );
+    }
+
+    @After
+    public void restoreReplanning() {
+        TrajectorySequenceRunner.REPLAN = replan;
+    }
+
+    @Test
+    public void oneBumpReplansOnce() {
+        Pose2d pose = new Pose2d(0, 0, 0);
+        Pose2d velocity = new Pose2d();
+
+        TrajectorySequence sequence = drive.trajectorySequenceBuilder(pose)
+                .compileLookupTables()
+                .forward(72)
+                .build();
+        runner.followTrajectorySequenceAsync(sequence);
+
+        boolean bumped = false;
+        double speedBeforeBump = 0;
+        double speedAfterSwap = Double.NaN;
+
+        double end = clock.time + 2 * sequence.duration();
+        while (runner.isBusy() && clock.time < end) {
+            if (!bumped && clock.time >= BUMP_TIME) {
+                speedBeforeBump = velocity.getX();
+                pose = new Pose2d(pose.getX(), pose.getY() + BUMP, pose.getHeading());
+                bumped = true;
+            }
+
+            long replans = runner.getReplanCount();
+            runner.update(pose, velocity, signal);
+            if (replans == 0 && runner.getReplanCount() == 1) {
+                speedAfterSwap = signal[SIGNAL_VEL_X];
+            }
+
+            // the robot does exactly what it's told
+            velocity = new Pose2d(signal[SIGNAL_VEL_X], signal[SIGNAL_VEL_Y], signal[SIGNAL_VEL_HEADING]);
+            double heading = pose.getHeading();
+            pose = new Pose2d(
+                    pose.getX() + (velocity.getX() * Math.cos(heading) - velocity.getY() * Math.sin(heading)) * DT,
+                    pose.getY() + (velocity.getX() * Math.sin(heading) + velocity.getY() * Math.cos(heading)) * DT,
+                    heading + velocity.getHeading() * DT
+            );
+            clock.time += DT;
+        }
+
+        assertTrue("the robot was bumped", bumped);
+        assertFalse("the sequence finished", runner.isBusy());
+        assertEquals("one bump, one replan", 1, runner.getReplanCount());
+        assertEquals(0, runner.getDiscardedReplanCount());
+
+        // the replacement keeps the robot's speed instead of starting from rest
+        assertTrue(speedAfterSwap + " in/s after the swap, " + speedBeforeBump + " in/s before the bump",
+                speedAfterSwap > 0.8 * speedBeforeBump);
+
+        assertEquals(72, pose.getX(), 1);
+        assertEquals(0, pose.getY(), 1);
+    }
+}
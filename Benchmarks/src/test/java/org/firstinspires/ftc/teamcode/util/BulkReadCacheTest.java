@@ -0,0 +1,89 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkReadCacheTest {
+    /**
+     * Hub that counts the bulk reads it's asked for and tracks its snapshot like a MANUAL mode LynxModule.
+     */
+    private static class FakeHub implements BulkReadCache.Hub {
+        LynxModule.BulkCachingMode mode = LynxModule.BulkCachingMode.OFF;
+        int bulkReads;
+        int snapshot = -1;
+
+        @Override
+        public void setBulkCachingMode(LynxModule.BulkCachingMode mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        public void clearBulkCache() {
+            snapshot = -1;
+        }
+
+        @Override
+        public void readBulkData() {
+            snapshot = ++bulkReads;
+        }
+    }
+
+    private final FakeHub controlHub = new FakeHub();
+    private final FakeHub expansionHub = new FakeHub();
+    private final BulkReadCache cache = new BulkReadCache(Arrays.asList(controlHub, expansionHub));
+
+    @Test
+    public void hubsAreSwitchedToManual() {
+        assertEquals(LynxModule.BulkCachingMode.MANUAL, controlHub.mode);
+        assertEquals(LynxModule.BulkCachingMode.MANUAL, expansionHub.mode);
+    }
+
+    @Test
+    public void severalReadsInOneTickCostOneTransactionPerHub() {
+        cache.clear();
+
+        // the drive, the lift and telemetry all reading in the same tick
+        cache.read();
+        cache.read(0);
+        cache.read();
+        cache.read(1);
+
+        assertEquals(1, controlHub.bulkReads);
+        assertEquals(1, expansionHub.bulkReads);
+        assertEquals(2, cache.getTransactionCount());
+        assertEquals(2.0, cache.getTransactionsPerTick(), 0.0);
+    }
+
+    @Test
+    public void clearStartsAFreshSnapshot() {
+        cache.clear();
+        cache.read(0);
+        int firstSnapshot = controlHub.snapshot;
+
+        cache.clear();
+        cache.read(0);
+        cache.read(0);
+
+        assertEquals(2, controlHub.bulkReads);
+        assertEquals(firstSnapshot + 1, controlHub.snapshot);
+        assertEquals(2, cache.getTransactionCount());
+    }
+
+    @Test
+    public void unreadHubsCostNothing() {
+        for (int tick = 0; tick < 10; tick++) {
+            cache.clear();
+            cache.read(0);
+            cache.read(0);
+        }
+
+        assertEquals(10, controlHub.bulkReads);
+        assertEquals(0, expansionHub.bulkReads);
+        assertEquals(1.0, cache.getTransactionsPerTick(), 0.0);
+    }
+}
@@ -33,7 +33,7 @@ import org.openftc.easyopencv.OpenCvCameraRotation;
 import org.openftc.easyopencv.OpenCvInternalCamera;
 import org.openftc.easyopencv.OpenCvInternalCamera2;
 
-import java.util.ArrayList;
+import java.util.List;
 @Disabled
 @TeleOp
 public class AprilTagDemo extends LinearOpMode {
@@ -55,13 +55,6 @@ public class AprilTagDemo extends LinearOpMode {
     // UNITS ARE METERS
     double tagsize = 0.0444;
 
-    int numFramesWithoutDetection = 0;
-
-    final float DECIMATION_HIGH = 3;
-    final float DECIMATION_LOW = 2;
-    final float THRESHOLD_HIGH_DECIMATION_RANGE_METERS = 1.0f;
-    final int THRESHOLD_NUM_FRAMES_NO_DETECTION_BEFORE_LOW_DECIMATION = 4;
-
     @Override
     public void runOpMode()
     {
@@ -89,13 +82,30 @@ public class AprilTagDemo extends LinearOpMode {
 
         telemetry.setMsTransmissionInterval(50);
 
+        boolean wasTogglePressed = false;
+        boolean wasRoiTogglePressed = false;
+
         while (opModeIsActive())
         {
+            // toggle competition mode to see what the overlay costs
+            if(gamepad1.a && !wasTogglePressed)
+            {
+                aprilTagDetectionPipeline.setCompetitionMode(!aprilTagDetectionPipeline.isCompetitionMode());
+            }
+            wasTogglePressed = gamepad1.a;
+
+            // and ROI tracking to see what it saves
+            if(gamepad1.b && !wasRoiTogglePressed)
+            {
+                aprilTagDetectionPipeline.setRoiEnabled(!aprilTagDetectionPipeline.isRoiEnabled());
+            }
+            wasRoiTogglePressed = gamepad1.b;
+
             // Calling getDetectionsUpdate() will only return an object if there was a new frame
             // processed since the last time we called it. Otherwise, it will return null. This
             // enables us to only run logic when there has been a new frame, as opposed to the
             // getLatestDetections() method which will always return an object.
-            ArrayList<AprilTagDetection> detections = aprilTagDetectionPipeline.getDetectionsUpdate();
+            List<AprilTagDetection> detections = aprilTagDetectionPipeline.getDetectionsUpdate();
 
             // If there's been a new frame...
             if(detections != null)
@@ -103,31 +113,17 @@ public class AprilTagDemo extends LinearOpMode {
                 telemetry.addData("FPS", camera.getFps());
                 telemetry.addData("Overhead ms", camera.getOverheadTimeMs());
                 telemetry.addData("Pipeline ms", camera.getPipelineTimeMs());
+                telemetry.addData("Overlay ms", aprilTagDetectionPipeline.getOverlayMs());
+                telemetry.addData("Competition mode (A to toggle)", aprilTagDetectionPipeline.isCompetitionMode());
+                telemetry.addData("Frame ms", aprilTagDetectionPipeline.getFrameMs());
+                telemetry.addData("Detect ms", aprilTagDetectionPipeline.getDetectMs());
+                telemetry.addData("Decimation", aprilTagDetectionPipeline.getDecimation());
+                telemetry.addData("ROI hit rate", aprilTagDetectionPipeline.getRoiHitRate());
+                telemetry.addData("ROI tracking (B to toggle)", aprilTagDetectionPipeline.isRoiEnabled());
 
-                // If we don't see any tags
-                if(detections.size() == 0)
-                {
-                    numFramesWithoutDetection++;
-
-                    // If we haven't seen a tag for a few frames, lower the decimation
-                    // so we can hopefully pick one up if we're e.g. far back
-                    if(numFramesWithoutDetection >= THRESHOLD_NUM_FRAMES_NO_DETECTION_BEFORE_LOW_DECIMATION)
-                    {
-                        aprilTagDetectionPipeline.setDecimation(DECIMATION_LOW);
-                    }
-                }
                 // We do see tags!
-                else
+                if(detections.size() > 0)
                 {
-                    numFramesWithoutDetection = 0;
-
-                    // If the target is within 1 meter, turn on high decimation to
-                    // increase the frame rate
-                    if(detections.get(0).pose.z < THRESHOLD_HIGH_DECIMATION_RANGE_METERS)
-                    {
-                        aprilTagDetectionPipeline.setDecimation(DECIMATION_HIGH);
-                    }
-
                     for(AprilTagDetection detection : detections)
                     {
                         telemetry.addLine(String.format("\nDetected tag ID=%d", detection.id));
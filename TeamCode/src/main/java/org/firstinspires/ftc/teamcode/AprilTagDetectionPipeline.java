@@ -21,6 +21,9 @@
 
 package org.firstinspires.ftc.teamcode;
 
+import androidx.annotation.Nullable;
+
+import org.firstinspires.ftc.teamcode.util.TripleBuffer;
 import org.opencv.calib3d.Calib3d;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
@@ -29,6 +32,7 @@ import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.MatOfPoint3f;
 import org.opencv.core.Point;
 import org.opencv.core.Point3;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 import org.openftc.apriltag.AprilTagDetection;
@@ -36,6 +40,8 @@ import org.openftc.apriltag.AprilTagDetectorJNI;
 import org.openftc.easyopencv.OpenCvPipeline;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 class AprilTagDetectionPipeline extends OpenCvPipeline
 {
@@ -43,8 +49,31 @@ class AprilTagDetectionPipeline extends OpenCvPipeline
     private Mat grey = new Mat();
     private ArrayList<AprilTagDetection> detections = new ArrayList<>();
 
-    private ArrayList<AprilTagDetection> detectionsUpdate = new ArrayList<>();
-    private final Object detectionsUpdateSync = new Object();
+    /**
+     * What one frame found. Nothing in it changes after it's published.
+     */
+    public static final class Snapshot
+    {
+        static final Snapshot NONE = new Snapshot(0, 0, new ArrayList<>());
+
+        public final long frameNumber; // counts up from 1, 0 before the first frame
+        public final long timestamp; // System.nanoTime() when the frame arrived
+        public final List<AprilTagDetection> detections;
+
+        Snapshot(long frameNumber, long timestamp, ArrayList<AprilTagDetection> detections)
+        {
+            this.frameNumber = frameNumber;
+            this.timestamp = timestamp;
+            this.detections = Collections.unmodifiableList(detections);
+        }
+    }
+
+    // The vision thread publishes a snapshot per frame and the opmode takes the newest one, neither
+    // ever waiting on the other. The getters below are the consumer side, so they all belong to one
+    // thread, normally the opmode's.
+    private final TripleBuffer<Snapshot> snapshots = new TripleBuffer<>(Snapshot.NONE);
+    private long frameNumber;
+    private long lastUpdateFrameNumber;
 
     Mat cameraMatrix;
 
@@ -67,6 +96,82 @@ class AprilTagDetectionPipeline extends OpenCvPipeline
     private boolean needToSetDecimation;
     private final Object decimationSync = new Object();
 
+    // Closed-loop decimation. After every frame the controller looks at what detection cost, how big
+    // the tags were and how confidently they decoded, and steps along DECIMATION_LEVELS: coarser while
+    // detection is over budget (or the tags are big enough not to need the resolution), finer while the
+    // tags are small, weak or lost and the predicted cost still fits. Cost scales with the number of
+    // decimated pixels searched, so the controller keeps the measured cost per searched pixel (an ROI
+    // crop and a full frame would otherwise average into a figure that fits neither) and predicts a
+    // frame as that times the area it will search times the squared ratio of the decimations. After a
+    // change it holds a few frames so the measurements catch up.
+    private static final float[] DECIMATION_LEVELS = {1.0f, 1.5f, 2.0f, 3.0f, 4.0f};
+    private static final int INITIAL_DECIMATION_LEVEL = 3; // what the detector is created with
+    private static final int DECIMATION_HOLD_FRAMES = 5;
+    private static final int LOST_FRAMES_BEFORE_FINER = 4;
+    private static final double LOST_BUDGET_FACTOR = 2.0; // a lost tag may cost up to twice the budget to find
+    private static final double MIN_DECIMATED_TAG_PX = 8; // tag side, in decimated pixels, the detector still reads reliably
+    private static final double LARGE_DECIMATED_TAG_PX = 16;
+    private static final double WEAK_DECISION_MARGIN = 30;
+    private static final double STRONG_DECISION_MARGIN = 50;
+    private static final double COST_SMOOTHING = 0.2;
+
+    private volatile boolean autoDecimation = true;
+    private volatile double targetLatencyMs = 40;
+    private volatile double targetFps = 20;
+    private volatile int decimationLevel = INITIAL_DECIMATION_LEVEL;
+    private int framesSinceDecimationChange;
+    private int framesWithoutDetection;
+    private volatile double detectMs = Double.NaN;
+    private double detectMsPerMpx = Double.NaN; // per million searched pixels, at the current decimation
+    private double searchedMpx; // searched by the last frame
+    private double fullFrameMpx;
+
+    // In competition mode nobody watches the viewport, so the OpenCV pose solve and the markers are
+    // skipped and frames only cost the detector itself
+    private volatile boolean competitionMode;
+
+    // Running average of what solving and drawing the markers costs per frame, i.e. what competition
+    // mode saves; only measured while the markers are being drawn
+    private static final double OVERLAY_SMOOTHING = 0.1;
+    private volatile double overlayMs = Double.NaN;
+
+    // Region-of-interest tracking. The sleeve barely moves in the image, so once a tag has been seen
+    // only a crop around its corners is converted and searched. A frame with no tag in the crop grows
+    // it, and enough of those in a row fall back to the full frame. The crop is snapped to a grid so
+    // the grey Mat keeps its size, and buffer, from one frame to the next.
+    private static final double ROI_MARGIN = 1.0; // of the tags' bounding box, on each side
+    private static final double ROI_GROWTH = 1.5;
+    private static final int ROI_ALIGN = 32;
+    private static final double FRAME_SMOOTHING = 0.1;
+
+    private volatile boolean roiEnabled = true;
+    private volatile int roiMaxMisses = 3;
+    private final Rect roi = new Rect();
+    private boolean roiActive;
+    private int roiMisses;
+    private final Point roiTopLeft = new Point();
+    private final Point roiBottomRight = new Point();
+
+    private volatile long roiFrames;
+    private volatile long roiHits;
+    private volatile double frameMs = Double.NaN;
+
+    // Everything the markers are drawn with is allocated once and reused for every detection on every
+    // frame; OpenCV Mats hold native memory the garbage collector doesn't see, so allocating them per
+    // frame leaks faster than finalizers catch up and makes frame times jitter.
+    private final MatOfDouble noDistortion = new MatOfDouble();
+    private final MatOfPoint3f tagModel = new MatOfPoint3f();
+    private final MatOfPoint3f axisModel = new MatOfPoint3f();
+    private final MatOfPoint3f cubeModel = new MatOfPoint3f();
+    private final MatOfPoint2f trapezoid = new MatOfPoint2f();
+    private final MatOfPoint2f projected = new MatOfPoint2f();
+    private final Pose pose = new Pose();
+
+    private final float[] trapezoidBuffer = new float[4 * 2];
+    private final float[] axisBuffer = new float[4 * 2];
+    private final float[] cubeBuffer = new float[8 * 2];
+    private final Point[] projectedPoints = new Point[8];
+
     public AprilTagDetectionPipeline(double tagsize, double fx, double fy, double cx, double cy)
     {
         this.tagsize = tagsize;
@@ -78,9 +183,11 @@ class AprilTagDetectionPipeline extends OpenCvPipeline
         this.cy = cy;
 
         constructMatrix();
+        constructModels();
 
         // Allocate a native context object. See the corresponding deletion in the finalizer
-        nativeApriltagPtr = AprilTagDetectorJNI.createApriltagDetector(AprilTagDetectorJNI.TagFamily.TAG_36h11.string, 3, 3);
+        decimation = DECIMATION_LEVELS[INITIAL_DECIMATION_LEVEL];
+        nativeApriltagPtr = AprilTagDetectorJNI.createApriltagDetector(AprilTagDetectorJNI.TagFamily.TAG_36h11.string, decimation, 3);
     }
 
     @Override
@@ -102,8 +209,23 @@ class AprilTagDetectionPipeline extends OpenCvPipeline
     @Override
     public Mat processFrame(Mat input)
     {
-        // Convert to greyscale
-        Imgproc.cvtColor(input, grey, Imgproc.COLOR_RGBA2GRAY);
+        // System.nanoTime() when the frame reached us, for localizers that compensate for vision latency
+        long frameTimestamp = System.nanoTime();
+
+        // Convert to greyscale, only inside the ROI if we're tracking one. submat() just makes a header
+        // over the input's pixels, there's no copy.
+        boolean searchRoi = roiActive && roiEnabled;
+        if(searchRoi)
+        {
+            Mat inputRoi = input.submat(roi);
+            Imgproc.cvtColor(inputRoi, grey, Imgproc.COLOR_RGBA2GRAY);
+            inputRoi.release();
+        }
+        else
+        {
+            roiActive = false;
+            Imgproc.cvtColor(input, grey, Imgproc.COLOR_RGBA2GRAY);
+        }
 
         synchronized (decimationSync)
         {
@@ -114,28 +236,293 @@ class AprilTagDetectionPipeline extends OpenCvPipeline
             }
         }
 
-        // Run AprilTag
-        detections = AprilTagDetectorJNI.runAprilTagDetectorSimple(nativeApriltagPtr, grey, tagsize, fx, fy, cx, cy);
+        // Run AprilTag. Inside the ROI the principal point moves with the crop, so the poses still come
+        // out right; the corners are moved back to full frame coordinates before anyone sees them.
+        if(searchRoi)
+        {
+            detections = AprilTagDetectorJNI.runAprilTagDetectorSimple(nativeApriltagPtr, grey, tagsize, fx, fy, cx - roi.x, cy - roi.y);
+            for(int i = 0; i < detections.size(); i++)
+            {
+                offsetDetection(detections.get(i), roi.x, roi.y);
+            }
+
+            roiFrames++;
+            if(!detections.isEmpty())
+            {
+                roiHits++;
+            }
+        }
+        else
+        {
+            detections = AprilTagDetectorJNI.runAprilTagDetectorSimple(nativeApriltagPtr, grey, tagsize, fx, fy, cx, cy);
+        }
+
+        // conversion plus detection, the part of the frame decimation changes
+        double frameDetectMs = (System.nanoTime() - frameTimestamp) / 1e6;
+        detectMs = Double.isNaN(detectMs)
+                ? frameDetectMs
+                : detectMs + COST_SMOOTHING * (frameDetectMs - detectMs);
+
+        fullFrameMpx = input.cols() * (double) input.rows() / 1e6;
+        searchedMpx = searchRoi ? roi.width * (double) roi.height / 1e6 : fullFrameMpx;
+        double frameMsPerMpx = frameDetectMs / searchedMpx;
+        detectMsPerMpx = Double.isNaN(detectMsPerMpx)
+                ? frameMsPerMpx
+                : detectMsPerMpx + COST_SMOOTHING * (frameMsPerMpx - detectMsPerMpx);
+
+        if(autoDecimation)
+        {
+            controlDecimation();
+        }
+
+        updateRoi(input.cols(), input.rows());
+
+        // from here on the detections are only read
+        snapshots.publish(new Snapshot(++frameNumber, frameTimestamp, detections));
 
-        synchronized (detectionsUpdateSync)
+        if(competitionMode)
         {
-            detectionsUpdate = detections;
+            recordFrameTime(frameTimestamp);
+            return input;
         }
 
         // For fun, use OpenCV to draw 6DOF markers on the image. We actually recompute the pose using
         // OpenCV because I haven't yet figured out how to re-use AprilTag's pose in OpenCV.
-        for(AprilTagDetection detection : detections)
+        long overlayStart = System.nanoTime();
+        for(int i = 0; i < detections.size(); i++)
+        {
+            poseFromTrapezoid(detections.get(i).corners, pose);
+            drawAxisMarker(input, 6, pose.rvec, pose.tvec);
+            draw3dCubeMarker(input, 5, pose.rvec, pose.tvec);
+        }
+
+        // only frames with tags have anything to draw, so only they say what the overlay costs
+        if(!detections.isEmpty())
+        {
+            double frameOverlayMs = (System.nanoTime() - overlayStart) / 1e6;
+            overlayMs = Double.isNaN(overlayMs)
+                    ? frameOverlayMs
+                    : overlayMs + OVERLAY_SMOOTHING * (frameOverlayMs - overlayMs);
+        }
+
+        if(roiActive)
         {
-            Pose pose = poseFromTrapezoid(detection.corners, cameraMatrix, tagsizeX, tagsizeY);
-            drawAxisMarker(input, tagsizeY/2.0, 6, pose.rvec, pose.tvec, cameraMatrix);
-            draw3dCubeMarker(input, tagsizeX, tagsizeX, tagsizeY, 5, pose.rvec, pose.tvec, cameraMatrix);
+            roiTopLeft.x = roi.x;
+            roiTopLeft.y = roi.y;
+            roiBottomRight.x = roi.x + roi.width;
+            roiBottomRight.y = roi.y + roi.height;
+            Imgproc.rectangle(input, roiTopLeft, roiBottomRight, white, 2);
         }
 
+        recordFrameTime(frameTimestamp);
         return input;
     }
 
+    /**
+     * Picks the decimation for the next frame from this frame's detections and the measured cost.
+     */
+    private void controlDecimation()
+    {
+        if(detections.isEmpty())
+        {
+            framesWithoutDetection++;
+        }
+        else
+        {
+            framesWithoutDetection = 0;
+        }
+
+        if(++framesSinceDecimationChange < DECIMATION_HOLD_FRAMES)
+        {
+            return;
+        }
+
+        int level = decimationLevel;
+        double budgetMs = Math.min(targetLatencyMs, 1000.0 / targetFps);
+
+        if(detections.isEmpty())
+        {
+            // nothing to lose by looking harder, e.g. if we're far back; a lost tag means full frames
+            if(framesWithoutDetection >= LOST_FRAMES_BEFORE_FINER && level > 0
+                    && predictDetectMs(level - 1, fullFrameMpx) <= budgetMs * LOST_BUDGET_FACTOR)
+            {
+                level--;
+            }
+        }
+        else
+        {
+            // judge by the smallest, least confident tag in view
+            double tagPx = Double.POSITIVE_INFINITY;
+            double decisionMargin = Double.POSITIVE_INFINITY;
+            for(int i = 0; i < detections.size(); i++)
+            {
+                AprilTagDetection detection = detections.get(i);
+                tagPx = Math.min(tagPx, tagSidePx(detection));
+                decisionMargin = Math.min(decisionMargin, detection.decisionMargin);
+            }
+
+            boolean needsFiner = decisionMargin < WEAK_DECISION_MARGIN
+                    || tagPx / DECIMATION_LEVELS[level] < MIN_DECIMATED_TAG_PX;
+            boolean canBeCoarser = level < DECIMATION_LEVELS.length - 1
+                    && decisionMargin >= STRONG_DECISION_MARGIN
+                    && tagPx / DECIMATION_LEVELS[level + 1] >= MIN_DECIMATED_TAG_PX;
+
+            if(needsFiner)
+            {
+                if(level > 0 && predictDetectMs(level - 1, searchedMpx) <= budgetMs)
+                {
+                    level--;
+                }
+            }
+            else if(canBeCoarser
+                    && (predictDetectMs(level, searchedMpx) > budgetMs
+                        || tagPx / DECIMATION_LEVELS[level + 1] >= LARGE_DECIMATED_TAG_PX))
+            {
+                level++;
+            }
+        }
+
+        if(level != decimationLevel)
+        {
+            double ratio = DECIMATION_LEVELS[decimationLevel] / DECIMATION_LEVELS[level];
+            detectMsPerMpx *= ratio * ratio;
+            decimationLevel = level;
+            framesSinceDecimationChange = 0;
+
+            synchronized (decimationSync)
+            {
+                decimation = DECIMATION_LEVELS[level];
+            }
+            AprilTagDetectorJNI.setApriltagDetectorDecimation(nativeApriltagPtr, DECIMATION_LEVELS[level]);
+        }
+    }
+
+    /**
+     * Predicted conversion and detection time for a frame searching {@code mpx} million pixels at
+     * {@code level}.
+     */
+    private double predictDetectMs(int level, double mpx)
+    {
+        double ratio = DECIMATION_LEVELS[decimationLevel] / DECIMATION_LEVELS[level];
+        return detectMsPerMpx * mpx * ratio * ratio;
+    }
+
+    /**
+     * Longest side of the detection's bounding box, in full frame pixels.
+     */
+    private static double tagSidePx(AprilTagDetection detection)
+    {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for(Point corner : detection.corners)
+        {
+            minX = Math.min(minX, corner.x);
+            minY = Math.min(minY, corner.y);
+            maxX = Math.max(maxX, corner.x);
+            maxY = Math.max(maxY, corner.y);
+        }
+
+        return Math.max(maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Moves a detection found in a crop back to full frame coordinates.
+     */
+    private static void offsetDetection(AprilTagDetection detection, int x, int y)
+    {
+        for(Point corner : detection.corners)
+        {
+            corner.x += x;
+            corner.y += y;
+        }
+
+        detection.center.x += x;
+        detection.center.y += y;
+    }
+
+    /**
+     * Picks where the next frame is searched: around this frame's tags if there were any, a grown
+     * crop after a miss, or the full frame once the tags have been missing for too long.
+     */
+    private void updateRoi(int frameWidth, int frameHeight)
+    {
+        if(!roiEnabled)
+        {
+            roiActive = false;
+            return;
+        }
+
+        if(!detections.isEmpty())
+        {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for(int i = 0; i < detections.size(); i++)
+            {
+                for(Point corner : detections.get(i).corners)
+                {
+                    minX = Math.min(minX, corner.x);
+                    minY = Math.min(minY, corner.y);
+                    maxX = Math.max(maxX, corner.x);
+                    maxY = Math.max(maxY, corner.y);
+                }
+            }
+
+            double margin = ROI_MARGIN * Math.max(maxX - minX, maxY - minY);
+            setRoi(minX - margin, minY - margin, maxX + margin, maxY + margin, frameWidth, frameHeight);
+            roiMisses = 0;
+        }
+        else if(roiActive)
+        {
+            roiMisses++;
+            if(roiMisses >= roiMaxMisses)
+            {
+                roiActive = false;
+                return;
+            }
+
+            double centerX = roi.x + roi.width / 2.0;
+            double centerY = roi.y + roi.height / 2.0;
+            double halfWidth = roi.width * ROI_GROWTH / 2.0;
+            double halfHeight = roi.height * ROI_GROWTH / 2.0;
+            setRoi(centerX - halfWidth, centerY - halfHeight, centerX + halfWidth, centerY + halfHeight, frameWidth, frameHeight);
+        }
+    }
+
+    private void setRoi(double left, double top, double right, double bottom, int frameWidth, int frameHeight)
+    {
+        int x0 = Math.max(0, (int) Math.floor(left / ROI_ALIGN) * ROI_ALIGN);
+        int y0 = Math.max(0, (int) Math.floor(top / ROI_ALIGN) * ROI_ALIGN);
+        int x1 = Math.min(frameWidth, (int) Math.ceil(right / ROI_ALIGN) * ROI_ALIGN);
+        int y1 = Math.min(frameHeight, (int) Math.ceil(bottom / ROI_ALIGN) * ROI_ALIGN);
+
+        roi.x = x0;
+        roi.y = y0;
+        roi.width = x1 - x0;
+        roi.height = y1 - y0;
+
+        // a crop that's most of the frame saves nothing
+        roiActive = roi.width * roi.height < frameWidth * frameHeight * 3 / 4;
+    }
+
+    private void recordFrameTime(long frameTimestamp)
+    {
+        double ms = (System.nanoTime() - frameTimestamp) / 1e6;
+        frameMs = Double.isNaN(frameMs)
+                ? ms
+                : frameMs + FRAME_SMOOTHING * (ms - frameMs);
+    }
+
+    /**
+     * Fixes the decimation, turning the decimation controller off.
+     */
     public void setDecimation(float decimation)
     {
+        autoDecimation = false;
+
         synchronized (decimationSync)
         {
             this.decimation = decimation;
@@ -143,21 +530,173 @@ class AprilTagDetectionPipeline extends OpenCvPipeline
         }
     }
 
-    public ArrayList<AprilTagDetection> getLatestDetections()
+    /**
+     * Turns the decimation controller on or off. It's on by default; when turned back on it resumes
+     * from the decimation it last picked.
+     */
+    public void setAutoDecimation(boolean autoDecimation)
     {
-        return detections;
+        if(autoDecimation)
+        {
+            synchronized (decimationSync)
+            {
+                decimation = DECIMATION_LEVELS[decimationLevel];
+                needToSetDecimation = true;
+            }
+        }
+
+        this.autoDecimation = autoDecimation;
+    }
+
+    public boolean isAutoDecimation()
+    {
+        return autoDecimation;
+    }
+
+    /**
+     * What the decimation controller aims for: conversion and detection within {@code latencyMs}, and
+     * fast enough for {@code fps} frames per second, whichever is tighter.
+     */
+    public void setDecimationTargets(double latencyMs, double fps)
+    {
+        this.targetLatencyMs = latencyMs;
+        this.targetFps = fps;
     }
 
-    public ArrayList<AprilTagDetection> getDetectionsUpdate()
+    public float getDecimation()
     {
-        synchronized (detectionsUpdateSync)
+        synchronized (decimationSync)
         {
-            ArrayList<AprilTagDetection> ret = detectionsUpdate;
-            detectionsUpdate = null;
-            return ret;
+            return decimation;
         }
     }
 
+    /**
+     * Running average of the milliseconds conversion and detection take per frame, or NaN before the
+     * first frame.
+     */
+    public double getDetectMs()
+    {
+        return detectMs;
+    }
+
+    /**
+     * Skips the OpenCV pose solve and marker drawing, leaving just the detections (whose id and pose
+     * come from the AprilTag library itself). Can be switched at any time from any thread.
+     */
+    public void setCompetitionMode(boolean competitionMode)
+    {
+        this.competitionMode = competitionMode;
+    }
+
+    public boolean isCompetitionMode()
+    {
+        return competitionMode;
+    }
+
+    /**
+     * Milliseconds per frame with tags that competition mode saves, averaged over the frames the
+     * markers were drawn on, or NaN if none have been yet.
+     */
+    public double getOverlayMs()
+    {
+        return overlayMs;
+    }
+
+    /**
+     * Turns region-of-interest tracking on or off; while off every frame is searched in full.
+     */
+    public void setRoiEnabled(boolean roiEnabled)
+    {
+        this.roiEnabled = roiEnabled;
+    }
+
+    public boolean isRoiEnabled()
+    {
+        return roiEnabled;
+    }
+
+    /**
+     * Frames in a row without a tag in the ROI before the full frame is searched again.
+     */
+    public void setRoiMaxMisses(int roiMaxMisses)
+    {
+        this.roiMaxMisses = Math.max(1, roiMaxMisses);
+    }
+
+    /**
+     * Fraction of the frames searched inside an ROI that found a tag there, or NaN if there haven't
+     * been any. A low rate means the crop keeps losing the tag and frames are being wasted on it.
+     */
+    public double getRoiHitRate()
+    {
+        long frames = roiFrames;
+        return frames == 0 ? Double.NaN : (double) roiHits / frames;
+    }
+
+    public long getRoiFrames()
+    {
+        return roiFrames;
+    }
+
+    /**
+     * Running average of the milliseconds processFrame() takes, or NaN before the first frame.
+     */
+    public double getFrameMs()
+    {
+        return frameMs;
+    }
+
+    /**
+     * Newest frame's results, or an empty snapshot with frame number 0 before the first frame. Never
+     * blocks.
+     */
+    public Snapshot getLatestSnapshot()
+    {
+        return snapshots.read();
+    }
+
+    /**
+     * Newest frame's results if that frame is newer than {@code frameNumber}, null otherwise. Pass the
+     * frame number of the last snapshot handled to poll for new results only.
+     */
+    @Nullable
+    public Snapshot getSnapshotAfter(long frameNumber)
+    {
+        Snapshot snapshot = snapshots.read();
+        return snapshot.frameNumber > frameNumber ? snapshot : null;
+    }
+
+    public List<AprilTagDetection> getLatestDetections()
+    {
+        return getLatestSnapshot().detections;
+    }
+
+    /**
+     * Detections from the newest frame if there has been a new frame since the last call, null
+     * otherwise.
+     */
+    @Nullable
+    public List<AprilTagDetection> getDetectionsUpdate()
+    {
+        Snapshot snapshot = getSnapshotAfter(lastUpdateFrameNumber);
+        if(snapshot == null)
+        {
+            return null;
+        }
+
+        lastUpdateFrameNumber = snapshot.frameNumber;
+        return snapshot.detections;
+    }
+
+    /**
+     * System.nanoTime() at which the frame behind the latest detections arrived.
+     */
+    public long getDetectionsTimestamp()
+    {
+        return getLatestSnapshot().timestamp;
+    }
+
     void constructMatrix()
     {
         //     Construct the camera matrix.
@@ -185,46 +724,31 @@ class AprilTagDetectionPipeline extends OpenCvPipeline
     }
 
     /**
-     * Draw a 3D axis marker on a detection. (Similar to what Vuforia does)
-     *
-     * @param buf the RGB buffer on which to draw the marker
-     * @param length the length of each of the marker 'poles'
-     * @param rvec the rotation vector of the detection
-     * @param tvec the translation vector of the detection
-     * @param cameraMatrix the camera matrix used when finding the detection
+     * Builds the constant 3D points the markers are drawn from and sizes the buffers that are reused
+     * for every detection.
      */
-    void drawAxisMarker(Mat buf, double length, int thickness, Mat rvec, Mat tvec, Mat cameraMatrix)
+    void constructModels()
     {
-        // The points in 3D space we wish to project onto the 2D image plane.
-        // The origin of the coordinate space is assumed to be in the center of the detection.
-        MatOfPoint3f axis = new MatOfPoint3f(
+        // The tag's corners in an 'ideal projection', centered on the origin
+        tagModel.fromArray(
+                new Point3(-tagsizeX/2, tagsizeY/2, 0),
+                new Point3(tagsizeX/2, tagsizeY/2, 0),
+                new Point3(tagsizeX/2, -tagsizeY/2, 0),
+                new Point3(-tagsizeX/2, -tagsizeY/2, 0));
+
+        double axisLength = tagsizeY/2.0;
+        axisModel.fromArray(
                 new Point3(0,0,0),
-                new Point3(length,0,0),
-                new Point3(0,length,0),
-                new Point3(0,0,-length)
-        );
-
-        // Project those points
-        MatOfPoint2f matProjectedPoints = new MatOfPoint2f();
-        Calib3d.projectPoints(axis, rvec, tvec, cameraMatrix, new MatOfDouble(), matProjectedPoints);
-        Point[] projectedPoints = matProjectedPoints.toArray();
+                new Point3(axisLength,0,0),
+                new Point3(0,axisLength,0),
+                new Point3(0,0,-axisLength));
 
-        // Draw the marker!
-        Imgproc.line(buf, projectedPoints[0], projectedPoints[1], red, thickness);
-        Imgproc.line(buf, projectedPoints[0], projectedPoints[2], green, thickness);
-        Imgproc.line(buf, projectedPoints[0], projectedPoints[3], blue, thickness);
-
-        Imgproc.circle(buf, projectedPoints[0], thickness, white, -1);
-    }
-
-    void draw3dCubeMarker(Mat buf, double length, double tagWidth, double tagHeight, int thickness, Mat rvec, Mat tvec, Mat cameraMatrix)
-    {
         //axis = np.float32([[0,0,0], [0,3,0], [3,3,0], [3,0,0],
         //       [0,0,-3],[0,3,-3],[3,3,-3],[3,0,-3] ])
-
-        // The points in 3D space we wish to project onto the 2D image plane.
-        // The origin of the coordinate space is assumed to be in the center of the detection.
-        MatOfPoint3f axis = new MatOfPoint3f(
+        double length = tagsizeX;
+        double tagWidth = tagsizeX;
+        double tagHeight = tagsizeY;
+        cubeModel.fromArray(
                 new Point3(-tagWidth/2, tagHeight/2,0),
                 new Point3( tagWidth/2, tagHeight/2,0),
                 new Point3( tagWidth/2,-tagHeight/2,0),
@@ -234,58 +758,95 @@ class AprilTagDetectionPipeline extends OpenCvPipeline
                 new Point3( tagWidth/2,-tagHeight/2,-length),
                 new Point3(-tagWidth/2,-tagHeight/2,-length));
 
-        // Project those points
-        MatOfPoint2f matProjectedPoints = new MatOfPoint2f();
-        Calib3d.projectPoints(axis, rvec, tvec, cameraMatrix, new MatOfDouble(), matProjectedPoints);
-        Point[] projectedPoints = matProjectedPoints.toArray();
+        trapezoid.alloc(4);
+
+        for(int i = 0; i < projectedPoints.length; i++)
+        {
+            projectedPoints[i] = new Point();
+        }
+    }
+
+    /**
+     * Draw a 3D axis marker on a detection. (Similar to what Vuforia does)
+     *
+     * @param buf the RGB buffer on which to draw the marker
+     * @param thickness the thickness of the lines
+     * @param rvec the rotation vector of the detection
+     * @param tvec the translation vector of the detection
+     */
+    void drawAxisMarker(Mat buf, int thickness, Mat rvec, Mat tvec)
+    {
+        // Project the axis, whose origin is the center of the detection, onto the 2D image plane
+        Point[] points = project(axisModel, axisBuffer, rvec, tvec);
+
+        // Draw the marker!
+        Imgproc.line(buf, points[0], points[1], red, thickness);
+        Imgproc.line(buf, points[0], points[2], green, thickness);
+        Imgproc.line(buf, points[0], points[3], blue, thickness);
+
+        Imgproc.circle(buf, points[0], thickness, white, -1);
+    }
+
+    void draw3dCubeMarker(Mat buf, int thickness, Mat rvec, Mat tvec)
+    {
+        // Project the cube, whose origin is the center of the detection, onto the 2D image plane
+        Point[] points = project(cubeModel, cubeBuffer, rvec, tvec);
 
         // Pillars
         for(int i = 0; i < 4; i++)
         {
-            Imgproc.line(buf, projectedPoints[i], projectedPoints[i+4], blue, thickness);
+            Imgproc.line(buf, points[i], points[i+4], blue, thickness);
         }
 
         // Base lines
-        //Imgproc.line(buf, projectedPoints[0], projectedPoints[1], blue, thickness);
-        //Imgproc.line(buf, projectedPoints[1], projectedPoints[2], blue, thickness);
-        //Imgproc.line(buf, projectedPoints[2], projectedPoints[3], blue, thickness);
-        //Imgproc.line(buf, projectedPoints[3], projectedPoints[0], blue, thickness);
+        //Imgproc.line(buf, points[0], points[1], blue, thickness);
+        //Imgproc.line(buf, points[1], points[2], blue, thickness);
+        //Imgproc.line(buf, points[2], points[3], blue, thickness);
+        //Imgproc.line(buf, points[3], points[0], blue, thickness);
 
         // Top lines
-        Imgproc.line(buf, projectedPoints[4], projectedPoints[5], green, thickness);
-        Imgproc.line(buf, projectedPoints[5], projectedPoints[6], green, thickness);
-        Imgproc.line(buf, projectedPoints[6], projectedPoints[7], green, thickness);
-        Imgproc.line(buf, projectedPoints[4], projectedPoints[7], green, thickness);
+        Imgproc.line(buf, points[4], points[5], green, thickness);
+        Imgproc.line(buf, points[5], points[6], green, thickness);
+        Imgproc.line(buf, points[6], points[7], green, thickness);
+        Imgproc.line(buf, points[4], points[7], green, thickness);
     }
 
     /**
-     * Extracts 6DOF pose from a trapezoid, using a camera intrinsics matrix and the
+     * Projects a model onto the image plane. The returned points are reused by the next projection.
+     */
+    private Point[] project(MatOfPoint3f model, float[] buffer, Mat rvec, Mat tvec)
+    {
+        Calib3d.projectPoints(model, rvec, tvec, cameraMatrix, noDistortion, projected);
+        projected.get(0, 0, buffer);
+
+        for(int i = 0; i < buffer.length / 2; i++)
+        {
+            projectedPoints[i].x = buffer[2*i];
+            projectedPoints[i].y = buffer[2*i+1];
+        }
+
+        return projectedPoints;
+    }
+
+    /**
+     * Extracts 6DOF pose from a trapezoid, using the camera intrinsics matrix and the
      * original size of the tag.
      *
      * @param points the points which form the trapezoid
-     * @param cameraMatrix the camera intrinsics matrix
-     * @param tagsizeX the original width of the tag
-     * @param tagsizeY the original height of the tag
-     * @return the 6DOF pose of the camera relative to the tag
+     * @param pose receives the 6DOF pose of the camera relative to the tag
      */
-    Pose poseFromTrapezoid(Point[] points, Mat cameraMatrix, double tagsizeX , double tagsizeY)
+    void poseFromTrapezoid(Point[] points, Pose pose)
     {
         // The actual 2d points of the tag detected in the image
-        MatOfPoint2f points2d = new MatOfPoint2f(points);
-
-        // The 3d points of the tag in an 'ideal projection'
-        Point3[] arrayPoints3d = new Point3[4];
-        arrayPoints3d[0] = new Point3(-tagsizeX/2, tagsizeY/2, 0);
-        arrayPoints3d[1] = new Point3(tagsizeX/2, tagsizeY/2, 0);
-        arrayPoints3d[2] = new Point3(tagsizeX/2, -tagsizeY/2, 0);
-        arrayPoints3d[3] = new Point3(-tagsizeX/2, -tagsizeY/2, 0);
-        MatOfPoint3f points3d = new MatOfPoint3f(arrayPoints3d);
+        for(int i = 0; i < 4; i++)
+        {
+            trapezoidBuffer[2*i] = (float) points[i].x;
+            trapezoidBuffer[2*i+1] = (float) points[i].y;
+        }
+        trapezoid.put(0, 0, trapezoidBuffer);
 
         // Using this information, actually solve for pose
-        Pose pose = new Pose();
-        Calib3d.solvePnP(points3d, points2d, cameraMatrix, new MatOfDouble(), pose.rvec, pose.tvec, false);
-
-        return pose;
+        Calib3d.solvePnP(tagModel, trapezoid, cameraMatrix, noDistortion, pose.rvec, pose.tvec, false);
     }
 
     /*
@@ -309,4 +870,4 @@ class AprilTagDetectionPipeline extends OpenCvPipeline
             this.tvec = tvec;
         }
     }
-}
\ No newline at end of file
+}
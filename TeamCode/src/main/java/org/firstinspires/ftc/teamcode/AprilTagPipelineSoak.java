@@ -0,0 +1,147 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.os.Debug;
+
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.opencv.core.Mat;
+import org.openftc.easyopencv.OpenCvCamera;
+import org.openftc.easyopencv.OpenCvCameraFactory;
+import org.openftc.easyopencv.OpenCvCameraRotation;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+import java.util.Locale;
+
+/*
+ * Soak test for AprilTagDetectionPipeline: grabs one webcam frame with a tag in it, then replays it
+ * through a fresh pipeline thousands of times and reports native heap and per-frame time for every
+ * window of frames. Both should stay flat; a native heap that keeps climbing means processFrame() is
+ * allocating OpenCV buffers again.
+ */
+@Disabled
+@TeleOp(name = "AprilTag Pipeline Soak", group = "test")
+public class AprilTagPipelineSoak extends LinearOpMode
+{
+    static final int FRAMES = 5000;
+    static final int WINDOW = 500;
+
+    // the replayed frame is the same every time, so ROI tracking and the decimation controller are
+    // turned off; otherwise the windows would measure whatever the pipeline adapted to, not a leak
+    static final float DECIMATION = 3;
+
+    // same calibration and tag as the autonomous opmodes
+    double fx = 578.272;
+    double fy = 578.272;
+    double cx = 402.145;
+    double cy = 221.506;
+    double tagsize = 0.0444;
+
+    private final Mat capturedFrame = new Mat();
+    private volatile boolean captured;
+
+    @Override
+    public void runOpMode()
+    {
+        AprilTagDetectionPipeline livePipeline = new AprilTagDetectionPipeline(tagsize, fx, fy, cx, cy);
+
+        int cameraMonitorViewId = hardwareMap.appContext.getResources().getIdentifier("cameraMonitorViewId", "id", hardwareMap.appContext.getPackageName());
+        OpenCvCamera camera = OpenCvCameraFactory.getInstance().createWebcam(hardwareMap.get(WebcamName.class, "Webcam 1"), cameraMonitorViewId);
+        camera.setPipeline(new OpenCvPipeline()
+        {
+            private final Mat candidate = new Mat();
+
+            @Override
+            public Mat processFrame(Mat input)
+            {
+                // keep an undrawn copy, the pipeline draws its markers onto the input
+                if (!captured) input.copyTo(candidate);
+
+                Mat output = livePipeline.processFrame(input);
+
+                if (!captured && !livePipeline.getLatestDetections().isEmpty())
+                {
+                    candidate.copyTo(capturedFrame);
+                    captured = true;
+                }
+
+                return output;
+            }
+        });
+        camera.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener()
+        {
+            @Override
+            public void onOpened()
+            {
+                camera.startStreaming(800, 448, OpenCvCameraRotation.UPSIDE_DOWN);
+            }
+
+            @Override
+            public void onError(int errorCode)
+            {
+
+            }
+        });
+
+        telemetry.addLine("Point the camera at a tag, then press start");
+        telemetry.update();
+
+        waitForStart();
+
+        while (opModeIsActive() && !captured)
+        {
+            telemetry.addLine("Waiting for a frame with a tag...");
+            telemetry.update();
+            sleep(50);
+        }
+
+        camera.closeCameraDevice();
+
+        if (!opModeIsActive()) return;
+
+        AprilTagDetectionPipeline pipeline = new AprilTagDetectionPipeline(tagsize, fx, fy, cx, cy);
+        pipeline.setRoiEnabled(false);
+        pipeline.setDecimation(DECIMATION);
+        Mat frame = new Mat();
+
+        // keep every window's line on screen
+        telemetry.setAutoClear(false);
+        telemetry.clearAll();
+
+        long windowTotal = 0;
+        long windowMax = 0;
+        for (int i = 1; i <= FRAMES && opModeIsActive(); i++)
+        {
+            capturedFrame.copyTo(frame);
+
+            long start = System.nanoTime();
+            pipeline.processFrame(frame);
+            long elapsed = System.nanoTime() - start;
+
+            windowTotal += elapsed;
+            windowMax = Math.max(windowMax, elapsed);
+
+            if (i % WINDOW == 0)
+            {
+                String line = String.format(Locale.US, "frames %d: native heap %d KB, mean %.2f ms, max %.2f ms",
+                        i, Debug.getNativeHeapAllocatedSize() / 1024,
+                        windowTotal / 1e6 / WINDOW, windowMax / 1e6);
+
+                RobotLog.i("AprilTagPipelineSoak " + line);
+                telemetry.addLine(line);
+                telemetry.update();
+
+                windowTotal = 0;
+                windowMax = 0;
+            }
+        }
+
+        while (opModeIsActive())
+        {
+            sleep(50);
+        }
+    }
+}
@@ -9,12 +9,13 @@ import com.qualcomm.robotcore.util.ElapsedTime;
 import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
 import org.firstinspires.ftc.teamcode.drive.SampleMecanumDrive;
 import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequencePrecomputer;
 import org.openftc.apriltag.AprilTagDetection;
 import org.openftc.easyopencv.OpenCvCamera;
 import org.openftc.easyopencv.OpenCvCameraFactory;
 import org.openftc.easyopencv.OpenCvCameraRotation;
 
-import java.util.ArrayList;
+import java.util.List;
 
 @Autonomous(name="Auto C2-B2", group="Autonomous")
 public class Auto_C2B2 extends LinearOpMode {
@@ -40,14 +41,6 @@ public class Auto_C2B2 extends LinearOpMode {
     // UNITS ARE METERS
     double tagsize = 0.0444;
 
-    int numFramesWithoutDetection = 0;
-
-    // april tag constants
-    final float DECIMATION_HIGH = 3;
-    final float DECIMATION_LOW = 2;
-    final float THRESHOLD_HIGH_DECIMATION_RANGE_METERS = 1.0f;
-    final int THRESHOLD_NUM_FRAMES_NO_DETECTION_BEFORE_LOW_DECIMATION = 4;
-
     // parking constants
     final double ZONE_ONE = 25;
     final double ZONE_TWO = 1;
@@ -85,11 +78,19 @@ public class Auto_C2B2 extends LinearOpMode {
 
         trajSeq = AutonomousTrajectories.trajectory_C2_B2(drive, lift, liftRear, wrist, intake);
 
+        // build every park route in the background while the camera reads the signal
+        TrajectorySequencePrecomputer<Double> parkTrajectories = new TrajectorySequencePrecomputer<>();
+        for (double zone : new double[] {ZONE_ONE, ZONE_TWO, ZONE_THREE}) {
+            parkTrajectories.submit(zone, () -> AutonomousTrajectories.trajectory_ParkLeft(zone, true, drive, lift, liftRear, wrist, intake));
+        }
+
         // set up camera
         int cameraMonitorViewId = hardwareMap.appContext.getResources().getIdentifier("cameraMonitorViewId", "id", hardwareMap.appContext.getPackageName());
         camera = OpenCvCameraFactory.getInstance().createWebcam(hardwareMap.get(WebcamName.class, "Webcam 1"), cameraMonitorViewId);
         aprilTagDetectionPipeline = new AprilTagDetectionPipeline(tagsize, fx, fy, cx, cy);
 
+        // the viewport isn't watched during a match; spend the init window on detection instead
+        aprilTagDetectionPipeline.setCompetitionMode(true);
         camera.setPipeline(aprilTagDetectionPipeline);
         camera.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener()
         {
@@ -119,31 +120,13 @@ public class Auto_C2B2 extends LinearOpMode {
             // processed since the last time we called it. Otherwise, it will return null. This
             // enables us to only run logic when there has been a new frame, as opposed to the
             // getLatestDetections() method which will always return an object.
-            ArrayList<AprilTagDetection> detections = aprilTagDetectionPipeline.getDetectionsUpdate();
+            List<AprilTagDetection> detections = aprilTagDetectionPipeline.getDetectionsUpdate();
 
             // If there's been a new frame...
             if (detections != null) {
 
-                // If we don't see any tags
-                if (detections.size() == 0) {
-                    numFramesWithoutDetection++;
-
-                    // If we haven't seen a tag for a few frames, lower the decimation
-                    // so we can hopefully pick one up if we're e.g. far back
-                    if (numFramesWithoutDetection >= THRESHOLD_NUM_FRAMES_NO_DETECTION_BEFORE_LOW_DECIMATION) {
-                        aprilTagDetectionPipeline.setDecimation(DECIMATION_LOW);
-                    }
-                }
                 // We do see tags! Yay!
-                else {
-                    numFramesWithoutDetection = 0;
-
-                    // If the target is within 1 meter, turn on high decimation to
-                    // increase the frame rate
-                    if (detections.get(0).pose.z < THRESHOLD_HIGH_DECIMATION_RANGE_METERS) {
-                        aprilTagDetectionPipeline.setDecimation(DECIMATION_HIGH);
-                    }
-
+                if (detections.size() > 0) {
                     // loop through detected tags - there should be only one (:
                     for (AprilTagDetection detection : detections) {
 
@@ -181,10 +164,13 @@ public class Auto_C2B2 extends LinearOpMode {
         });
         runtime.reset();
 
+        // pick up the park route for the detected zone, built during init
+        TrajectorySequence parkSequence = parkTrajectories.get(parkZone);
+
         // Run the selected trajectory
         drive.followTrajectorySequence(trajSeq);
         // Run the park trajectory
-        drive.followTrajectorySequence(AutonomousTrajectories.trajectory_ParkLeft(ZONE_ONE, true, drive, lift, liftRear, wrist, intake));
+        drive.followTrajectorySequence(parkSequence);
 
     }
 }
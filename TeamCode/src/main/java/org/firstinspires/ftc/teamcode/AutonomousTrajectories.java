@@ -5,10 +5,10 @@ package org.firstinspires.ftc.teamcode;
 import com.acmerobotics.roadrunner.geometry.Pose2d;
 import com.acmerobotics.roadrunner.geometry.Vector2d;
 import com.qualcomm.robotcore.hardware.DcMotor;
-import com.qualcomm.robotcore.util.Range;
 
 import org.firstinspires.ftc.teamcode.drive.SampleMecanumDrive;
 import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+import org.firstinspires.ftc.teamcode.util.AssetsTrajectoryManager;
 
 public final class AutonomousTrajectories {
 
@@ -82,7 +82,7 @@ public final class AutonomousTrajectories {
         TrajectorySequence trajSeq;
 
         // create trajectory sequence
-        trajSeq = drive.trajectorySequenceBuilder(startPose)
+        trajSeq = AssetsTrajectoryManager.loadOrBuild("C2_D3", () -> drive.trajectorySequenceBuilder(startPose), builder -> builder
                 // reposition wrist to FRONT
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 // drive around D1
@@ -189,7 +189,7 @@ public final class AutonomousTrajectories {
                 .addTemporalMarker(() -> intake.moveAbsolute(OPEN)) // theoretical +10 points
                 .waitSeconds(0.2)
 
-                .build();
+        );
 
         finalPose = new Pose2d((D3_X), -(D3_Y), Math.toRadians(135.00));
 
@@ -207,7 +207,7 @@ public final class AutonomousTrajectories {
         drive.setPoseEstimate(startPose);
 
         TrajectorySequence trajSeq;
-        trajSeq = drive.trajectorySequenceBuilder(startPose)
+        trajSeq = AssetsTrajectoryManager.loadOrBuild("C2_B3", () -> drive.trajectorySequenceBuilder(startPose), builder -> builder
                 // reposition wrist to front
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 // drive around B1
@@ -312,7 +312,7 @@ public final class AutonomousTrajectories {
                 .addTemporalMarker(() -> intake.moveAbsolute(OPEN)) // theoretical +10 points
                 .waitSeconds(0.3)
 
-                .build();
+        );
 
                 finalPose = new Pose2d(-(B3_X), -(B3_Y), Math.toRadians(45.00));
 
@@ -331,7 +331,7 @@ public final class AutonomousTrajectories {
 
         TrajectorySequence trajSeq;
         // create trajectory sequence
-        trajSeq = drive.trajectorySequenceBuilder(startPose)
+        trajSeq = AssetsTrajectoryManager.loadOrBuild("D2_D3", () -> drive.trajectorySequenceBuilder(startPose), builder -> builder
                 // reposition wrist to FRONT
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 // drive around B1
@@ -437,7 +437,7 @@ public final class AutonomousTrajectories {
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 .waitSeconds(0.1)
 
-                .build();
+        );
 
         finalPose = new Pose2d(D3_X, -(D3_Y), Math.toRadians(-45.00));
 
@@ -456,7 +456,7 @@ public final class AutonomousTrajectories {
 
         TrajectorySequence trajSeq;
         // create trajectory sequence
-        trajSeq = drive.trajectorySequenceBuilder(startPose)
+        trajSeq = AssetsTrajectoryManager.loadOrBuild("B2_B3", () -> drive.trajectorySequenceBuilder(startPose), builder -> builder
                 // reposition wrist to FRONT
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 // drive around B1
@@ -561,7 +561,7 @@ public final class AutonomousTrajectories {
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 .waitSeconds(0.1)
 
-                .build();
+        );
 
         finalPose = new Pose2d(-(B3_X), -(B3_Y+1), Math.toRadians(225.00));
 
@@ -580,7 +580,7 @@ public final class AutonomousTrajectories {
 
         TrajectorySequence trajSeq;
         // create trajectory sequence
-        trajSeq = drive.trajectorySequenceBuilder(startPose)
+        trajSeq = AssetsTrajectoryManager.loadOrBuild("D2_D2", () -> drive.trajectorySequenceBuilder(startPose), builder -> builder
                 // reposition wrist to FRONT
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 // drive around B1
@@ -686,7 +686,7 @@ public final class AutonomousTrajectories {
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 .waitSeconds(0.1)
 
-                .build();
+        );
 
         finalPose = new Pose2d(RIGHT_D2_X, -(RIGHT_D2_Y), Math.toRadians(45.00));
 
@@ -707,7 +707,7 @@ public final class AutonomousTrajectories {
 
         TrajectorySequence trajSeq;
         // create trajectory sequence
-        trajSeq = drive.trajectorySequenceBuilder(startPose)
+        trajSeq = AssetsTrajectoryManager.loadOrBuild("B2_B2", () -> drive.trajectorySequenceBuilder(startPose), builder -> builder
                 // reposition wrist to FRONT
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 // drive around B1
@@ -812,7 +812,7 @@ public final class AutonomousTrajectories {
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 .waitSeconds(0.1)
 
-                .build();
+        );
 
         finalPose = new Pose2d(-(LEFT_B2_X), -(LEFT_B2_Y+4), Math.toRadians(135.00));
 
@@ -833,7 +833,7 @@ public final class AutonomousTrajectories {
         TrajectorySequence trajSeq;
 
         // create trajectory sequence
-        trajSeq = drive.trajectorySequenceBuilder(startPose)
+        trajSeq = AssetsTrajectoryManager.loadOrBuild("C2_D2", () -> drive.trajectorySequenceBuilder(startPose), builder -> builder
                 // reposition wrist to FRONT
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 // drive around D1
@@ -942,7 +942,7 @@ public final class AutonomousTrajectories {
                 .addTemporalMarker(() -> intake.moveAbsolute(OPEN)) // theoretical +10 points
                 .waitSeconds(0.2)
 
-                .build();
+        );
 
         finalPose = new Pose2d((RIGHT_D2_X), -(RIGHT_D2_Y), Math.toRadians(225.00));
 
@@ -962,7 +962,7 @@ public final class AutonomousTrajectories {
 
         TrajectorySequence trajSeq;
         // create trajectory sequence
-        trajSeq = drive.trajectorySequenceBuilder(startPose)
+        trajSeq = AssetsTrajectoryManager.loadOrBuild("C2_B2", () -> drive.trajectorySequenceBuilder(startPose), builder -> builder
                 // reposition wrist to FRONT
                 .addTemporalMarker(() -> wrist.moveAbsolute(FRONT))
                 // drive around B1
@@ -1069,7 +1069,7 @@ public final class AutonomousTrajectories {
                 .addTemporalMarker(() -> intake.moveAbsolute(OPEN)) // theoretical +10 points
                 .waitSeconds(0.3)
 
-                .build();
+        );
 
         finalPose = new Pose2d(-(LEFT_B2_X), -(LEFT_B2_Y), Math.toRadians(-45.00));
 
@@ -0,0 +1,191 @@
+package org.firstinspires.ftc.teamcode.drive;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.localization.Localizer;
+import com.acmerobotics.roadrunner.util.Angle;
+
+/**
+ * Wheel odometry that works on primitive arrays end to end, so {@link #update} allocates nothing.
+ *
+ * Subclasses fill preallocated arrays with wheel positions and velocities and map wheel motion to robot
+ * motion in place. The pose is integrated with the same constant-curvature update as Road Runner's
+ * Kinematics.relativeOdometryUpdate and kept as primitives; the Pose2d objects Road Runner expects
+ * are only created when asked for, at most once per update.
+ */
+public abstract class ArrayOdometryLocalizer implements Localizer {
+    private final double[] wheelPositions;
+    private final double[] lastWheelPositions;
+    private final double[] wheelDeltas;
+    private final double[] wheelVelocities;
+
+    private final double[] robotDelta = new double[3];
+    private final double[] robotVelocity = new double[3];
+
+    private boolean hasLastWheelPositions;
+    private boolean hasRobotDelta;
+    private double lastExternalHeading = Double.NaN;
+    private boolean hasVelocity;
+
+    private final double[] pose = new double[3]; // x, y, heading
+
+    private Pose2d poseEstimate = new Pose2d();
+    @Nullable
+    private Pose2d poseVelocity;
+    private boolean poseVelocityIsCurrent = true;
+
+    protected ArrayOdometryLocalizer(int wheels) {
+        wheelPositions = new double[wheels];
+        lastWheelPositions = new double[wheels];
+        wheelDeltas = new double[wheels];
+        wheelVelocities = new double[wheels];
+    }
+
+    /**
+     * Writes the current wheel positions, in inches, into {@code positions}.
+     */
+    protected abstract void fillWheelPositions(double[] positions);
+
+    /**
+     * Writes the current wheel velocities, in inches per second, into {@code velocities}, or returns
+     * false if they aren't available.
+     */
+    protected abstract boolean fillWheelVelocities(double[] velocities);
+
+    /**
+     * Converts wheel motion to robot-frame motion (x, y, heading), writing the result into {@code robot}.
+     */
+    protected abstract void wheelToRobot(double[] wheels, double[] robot);
+
+    /**
+     * Heading from an external sensor, or NaN to take the heading from the wheels.
+     */
+    protected double getExternalHeading() {
+        return Double.NaN;
+    }
+
+    /**
+     * Heading velocity from an external sensor, or NaN to take it from the wheels.
+     */
+    protected double getExternalHeadingVelocity() {
+        return Double.NaN;
+    }
+
+    /**
+     * Called when the pose estimate is set, e.g. to re-zero an external heading sensor.
+     */
+    protected void onPoseEstimateSet(Pose2d pose) {
+    }
+
+    @NonNull
+    @Override
+    public Pose2d getPoseEstimate() {
+        if (poseEstimate == null) {
+            poseEstimate = new Pose2d(pose[0], pose[1], pose[2]);
+        }
+
+        return poseEstimate;
+    }
+
+    @Override
+    public void setPoseEstimate(@NonNull Pose2d pose) {
+        this.pose[0] = pose.getX();
+        this.pose[1] = pose.getY();
+        this.pose[2] = pose.getHeading();
+        poseEstimate = pose;
+
+        hasLastWheelPositions = false;
+        hasRobotDelta = false;
+        lastExternalHeading = Double.NaN;
+
+        onPoseEstimateSet(pose);
+    }
+
+    @Nullable
+    @Override
+    public Pose2d getPoseVelocity() {
+        if (!poseVelocityIsCurrent) {
+            poseVelocity = hasVelocity ? new Pose2d(robotVelocity[0], robotVelocity[1], robotVelocity[2]) : null;
+            poseVelocityIsCurrent = true;
+        }
+
+        return poseVelocity;
+    }
+
+    @Override
+    public void update() {
+        fillWheelPositions(wheelPositions);
+        double externalHeading = getExternalHeading();
+
+        hasRobotDelta = hasLastWheelPositions;
+        if (hasLastWheelPositions) {
+            for (int i = 0; i < wheelPositions.length; i++) {
+                wheelDeltas[i] = wheelPositions[i] - lastWheelPositions[i];
+            }
+
+            wheelToRobot(wheelDeltas, robotDelta);
+
+            double headingDelta = Double.isNaN(externalHeading)
+                    ? robotDelta[2]
+                    : Angle.normDelta(externalHeading - lastExternalHeading);
+
+            integrate(pose, robotDelta[0], robotDelta[1], headingDelta);
+        }
+
+        System.arraycopy(wheelPositions, 0, lastWheelPositions, 0, wheelPositions.length);
+        hasLastWheelPositions = true;
+        lastExternalHeading = externalHeading;
+
+        hasVelocity = fillWheelVelocities(wheelVelocities);
+        if (hasVelocity) {
+            wheelToRobot(wheelVelocities, robotVelocity);
+
+            double externalHeadingVelocity = getExternalHeadingVelocity();
+            if (!Double.isNaN(externalHeadingVelocity)) {
+                robotVelocity[2] = externalHeadingVelocity;
+            }
+        }
+
+        poseEstimate = null;
+        poseVelocityIsCurrent = false;
+    }
+
+    /**
+     * Whether the last {@link #update} measured any wheel motion; the first one after the pose is set
+     * only records the starting positions.
+     */
+    boolean hasRobotDelta() {
+        return hasRobotDelta;
+    }
+
+    /**
+     * Robot-frame motion (x, y, heading) the wheels measured in the last update, before any external
+     * heading is applied. The array is reused; don't hold on to it.
+     */
+    double[] getRobotDelta() {
+        return robotDelta;
+    }
+
+    static void integrate(double[] pose, double dx, double dy, double dtheta) {
+        double sineTerm, cosTerm;
+        if (Math.abs(dtheta) < 1e-6) {
+            sineTerm = 1.0 - dtheta * dtheta / 6.0;
+            cosTerm = dtheta / 2.0;
+        } else {
+            sineTerm = Math.sin(dtheta) / dtheta;
+            cosTerm = (1 - Math.cos(dtheta)) / dtheta;
+        }
+
+        double fieldDx = sineTerm * dx - cosTerm * dy;
+        double fieldDy = cosTerm * dx + sineTerm * dy;
+
+        double cos = Math.cos(pose[2]);
+        double sin = Math.sin(pose[2]);
+
+        pose[0] += fieldDx * cos - fieldDy * sin;
+        pose[1] += fieldDx * sin + fieldDy * cos;
+        pose[2] = Angle.norm(pose[2] + dtheta);
+    }
+}
@@ -0,0 +1,395 @@
+package org.firstinspires.ftc.teamcode.drive;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.localization.Localizer;
+import com.acmerobotics.roadrunner.util.Angle;
+
+import org.firstinspires.ftc.teamcode.util.ImuSampler;
+
+/**
+ * Extended Kalman filter over the field pose (x, y, heading) that fuses wheel odometry, the IMU heading
+ * and pose fixes from vision.
+ *
+ * Every {@link #update} predicts with the wheels' robot-frame motion, with noise that grows with the
+ * distance and angle travelled, then corrects the heading with the newest IMU sample if there is one.
+ * Vision fixes arrive late, so {@link #addVisionMeasurement} rewinds to the tick the frame was taken on,
+ * applies the fix there and replays the odometry and IMU updates recorded since; fixes that disagree
+ * with the estimate beyond {@link #VISION_GATE} are rejected as outliers. The state, covariance and
+ * replay history are fixed-size primitive arrays, so neither step allocates.
+ *
+ * Timestamps are {@link System#nanoTime()}, the same clock {@link ImuSampler} stamps its samples with.
+ * Everything must be called from the control loop thread.
+ */
+@Config
+public class EkfLocalizer implements Localizer {
+    // process noise: standard deviation per unit of wheel motion
+    public static double TRANSLATION_NOISE = 0.02; // in per in
+    public static double MIN_TRANSLATION_NOISE = 0.001; // in per update
+    public static double HEADING_NOISE = 0.02; // rad per rad
+    public static double HEADING_DRIFT_NOISE = 0.0005; // rad per in, for wheel slip
+
+    public static double IMU_HEADING_NOISE = Math.toRadians(1); // rad
+
+    // chi-square threshold for 3 degrees of freedom at 99%
+    public static double VISION_GATE = 11.34;
+
+    private static final int HISTORY = 128; // ticks, about a second at a typical loop rate
+
+    private static final double INCHES_PER_METER = 39.3701;
+
+    private final ArrayOdometryLocalizer wheels;
+    @Nullable
+    private final ImuSampler imu;
+
+    private final double[] state = new double[3];
+    private final double[] covariance = new double[9];
+
+    private double imuOffset;
+    private boolean hasImuOffset;
+    private long lastImuTimestamp;
+    private double lastImuHeadingVelocity = Double.NaN;
+
+    // ring of past ticks, oldest first from historyHead - historySize
+    private final long[] historyTimes = new long[HISTORY];
+    private final double[] historyDeltas = new double[HISTORY * 3];
+    private final double[] historyImu = new double[HISTORY]; // NaN if the tick had no new sample
+    private final double[] historyStates = new double[HISTORY * 3];
+    private final double[] historyCovariances = new double[HISTORY * 9];
+    private int historyHead;
+    private int historySize;
+
+    // scratch space for the matrix math
+    private final double[] innovation = new double[3];
+    private final double[] innovationCovariance = new double[9];
+    private final double[] innovationInverse = new double[9];
+    private final double[] gain = new double[9];
+    private final double[] product = new double[9];
+    private final double[] savedState = new double[3];
+    private final double[] savedCovariance = new double[9];
+
+    @Nullable
+    private Pose2d poseEstimate = new Pose2d();
+    @Nullable
+    private Pose2d poseVelocity;
+    private boolean poseVelocityIsCurrent = true;
+
+    /**
+     * @param wheels odometry to predict with; it shouldn't take its heading from the IMU itself
+     * @param imu heading source, or null to rely on the wheels and vision for heading
+     */
+    public EkfLocalizer(ArrayOdometryLocalizer wheels, @Nullable ImuSampler imu) {
+        this.wheels = wheels;
+        this.imu = imu;
+    }
+
+    @NonNull
+    @Override
+    public Pose2d getPoseEstimate() {
+        if (poseEstimate == null) {
+            poseEstimate = new Pose2d(state[0], state[1], state[2]);
+        }
+
+        return poseEstimate;
+    }
+
+    @Override
+    public void setPoseEstimate(@NonNull Pose2d pose) {
+        state[0] = pose.getX();
+        state[1] = pose.getY();
+        state[2] = pose.getHeading();
+        for (int i = 0; i < 9; i++) covariance[i] = 0;
+
+        historySize = 0;
+        hasImuOffset = false;
+
+        wheels.setPoseEstimate(pose);
+        poseEstimate = pose;
+    }
+
+    @Nullable
+    @Override
+    public Pose2d getPoseVelocity() {
+        if (!poseVelocityIsCurrent) {
+            Pose2d wheelVelocity = wheels.getPoseVelocity();
+            if (wheelVelocity != null && !Double.isNaN(lastImuHeadingVelocity)) {
+                wheelVelocity = new Pose2d(wheelVelocity.getX(), wheelVelocity.getY(), lastImuHeadingVelocity);
+            }
+
+            poseVelocity = wheelVelocity;
+            poseVelocityIsCurrent = true;
+        }
+
+        return poseVelocity;
+    }
+
+    /**
+     * Diagonal of the estimate's covariance: variances of x, y (in^2) and heading (rad^2).
+     */
+    public double getVariance(int axis) {
+        return covariance[4 * axis];
+    }
+
+    @Override
+    public void update() {
+        wheels.update();
+
+        double dx = 0, dy = 0, dtheta = 0;
+        if (wheels.hasRobotDelta()) {
+            double[] delta = wheels.getRobotDelta();
+            dx = delta[0];
+            dy = delta[1];
+            dtheta = delta[2];
+        }
+
+        predict(dx, dy, dtheta);
+
+        double imuHeading = Double.NaN;
+        if (imu != null) {
+            ImuSampler.Sample sample = imu.latest();
+            lastImuHeadingVelocity = sample.headingVelocity;
+
+            if (!hasImuOffset) {
+                // the IMU only knows its heading relative to power-on; line it up with the estimate
+                imuOffset = Angle.normDelta(state[2] - sample.heading);
+                hasImuOffset = true;
+                lastImuTimestamp = sample.timestamp;
+            } else if (sample.timestamp != lastImuTimestamp) {
+                lastImuTimestamp = sample.timestamp;
+
+                imuHeading = Angle.norm(sample.heading + imuOffset);
+                correctHeading(imuHeading, IMU_HEADING_NOISE * IMU_HEADING_NOISE);
+            }
+        }
+
+        record(System.nanoTime(), dx, dy, dtheta, imuHeading);
+
+        poseEstimate = null;
+        poseVelocityIsCurrent = false;
+    }
+
+    /**
+     * Fuses a robot pose measured at {@code timestamp} (System.nanoTime()), e.g. from an AprilTag.
+     * Returns false if the measurement is older than the replay history or fails the outlier gate.
+     */
+    public boolean addVisionMeasurement(Pose2d robotPose, long timestamp, double positionStdDev, double headingStdDev) {
+        // newest tick taken at or before the measurement
+        int back = 0;
+        while (back < historySize && historyTimes[historyIndex(back)] > timestamp) back++;
+        if (back == historySize) return false;
+
+        System.arraycopy(state, 0, savedState, 0, 3);
+        System.arraycopy(covariance, 0, savedCovariance, 0, 9);
+
+        int index = historyIndex(back);
+        System.arraycopy(historyStates, index * 3, state, 0, 3);
+        System.arraycopy(historyCovariances, index * 9, covariance, 0, 9);
+
+        double positionVariance = positionStdDev * positionStdDev;
+        if (!correctPose(robotPose, positionVariance, positionVariance, headingStdDev * headingStdDev)) {
+            System.arraycopy(savedState, 0, state, 0, 3);
+            System.arraycopy(savedCovariance, 0, covariance, 0, 9);
+            return false;
+        }
+        store(index);
+
+        // replay everything the robot did since the frame was taken
+        for (int i = back - 1; i >= 0; i--) {
+            index = historyIndex(i);
+
+            predict(historyDeltas[index * 3], historyDeltas[index * 3 + 1], historyDeltas[index * 3 + 2]);
+            if (!Double.isNaN(historyImu[index])) {
+                correctHeading(historyImu[index], IMU_HEADING_NOISE * IMU_HEADING_NOISE);
+            }
+
+            store(index);
+        }
+
+        poseEstimate = null;
+        return true;
+    }
+
+    /**
+     * Robot pose implied by seeing an AprilTag with a known field pose.
+     *
+     * @param tagPose field pose of the tag, with the heading pointing into its face, i.e. the heading a
+     *                camera squarely facing the tag would have
+     * @param tagX tag position to the camera's right, in meters (AprilTagPose.x)
+     * @param tagZ tag distance in front of the camera, in meters (AprilTagPose.z)
+     * @param tagYaw rotation of the tag relative to squarely facing the camera, counter-clockwise seen
+     *               from above, in radians
+     * @param cameraOffset pose of the camera in the robot frame
+     */
+    public static Pose2d robotPoseFromTag(Pose2d tagPose, double tagX, double tagZ, double tagYaw, Pose2d cameraOffset) {
+        Pose2d cameraToTag = new Pose2d(tagZ * INCHES_PER_METER, -tagX * INCHES_PER_METER, tagYaw);
+        Pose2d cameraPose = compose(tagPose, invert(cameraToTag));
+
+        return compose(cameraPose, invert(cameraOffset));
+    }
+
+    private static Pose2d compose(Pose2d a, Pose2d b) {
+        double cos = Math.cos(a.getHeading());
+        double sin = Math.sin(a.getHeading());
+
+        return new Pose2d(
+                a.getX() + cos * b.getX() - sin * b.getY(),
+                a.getY() + sin * b.getX() + cos * b.getY(),
+                Angle.norm(a.getHeading() + b.getHeading())
+        );
+    }
+
+    private static Pose2d invert(Pose2d pose) {
+        double cos = Math.cos(pose.getHeading());
+        double sin = Math.sin(pose.getHeading());
+
+        return new Pose2d(
+                -cos * pose.getX() - sin * pose.getY(),
+                sin * pose.getX() - cos * pose.getY(),
+                -pose.getHeading()
+        );
+    }
+
+    private void predict(double dx, double dy, double dtheta) {
+        double x0 = state[0];
+        double y0 = state[1];
+
+        ArrayOdometryLocalizer.integrate(state, dx, dy, dtheta);
+
+        // the Jacobian is the identity except for the heading column: turning the robot swings the
+        // field displacement around, so dx'/dheading = -(y' - y) and dy'/dheading = x' - x
+        double a = -(state[1] - y0);
+        double b = state[0] - x0;
+
+        // P = F P F^T, with F P touching only the first two rows...
+        for (int j = 0; j < 3; j++) {
+            covariance[j] += a * covariance[6 + j];
+            covariance[3 + j] += b * covariance[6 + j];
+        }
+        // ...and (F P) F^T only the first two columns
+        for (int i = 0; i < 3; i++) {
+            covariance[3 * i] += a * covariance[3 * i + 2];
+            covariance[3 * i + 1] += b * covariance[3 * i + 2];
+        }
+
+        double translation = Math.hypot(dx, dy);
+        double translationNoise = TRANSLATION_NOISE * translation + MIN_TRANSLATION_NOISE;
+        double headingNoise = HEADING_NOISE * Math.abs(dtheta) + HEADING_DRIFT_NOISE * translation;
+
+        covariance[0] += translationNoise * translationNoise;
+        covariance[4] += translationNoise * translationNoise;
+        covariance[8] += headingNoise * headingNoise;
+    }
+
+    private void correctHeading(double heading, double variance) {
+        double residual = Angle.normDelta(heading - state[2]);
+        double s = covariance[8] + variance;
+
+        double k0 = covariance[2] / s;
+        double k1 = covariance[5] / s;
+        double k2 = covariance[8] / s;
+
+        state[0] += k0 * residual;
+        state[1] += k1 * residual;
+        state[2] = Angle.norm(state[2] + k2 * residual);
+
+        // P -= K H P, where H P is the heading row of P
+        double p20 = covariance[6], p21 = covariance[7], p22 = covariance[8];
+        covariance[0] -= k0 * p20;
+        covariance[1] -= k0 * p21;
+        covariance[2] -= k0 * p22;
+        covariance[3] -= k1 * p20;
+        covariance[4] -= k1 * p21;
+        covariance[5] -= k1 * p22;
+        covariance[6] -= k2 * p20;
+        covariance[7] -= k2 * p21;
+        covariance[8] -= k2 * p22;
+    }
+
+    private boolean correctPose(Pose2d measurement, double xVariance, double yVariance, double headingVariance) {
+        innovation[0] = measurement.getX() - state[0];
+        innovation[1] = measurement.getY() - state[1];
+        innovation[2] = Angle.normDelta(measurement.getHeading() - state[2]);
+
+        System.arraycopy(covariance, 0, innovationCovariance, 0, 9);
+        innovationCovariance[0] += xVariance;
+        innovationCovariance[4] += yVariance;
+        innovationCovariance[8] += headingVariance;
+
+        if (!invert3(innovationCovariance, innovationInverse)) return false;
+
+        double mahalanobis = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                mahalanobis += innovation[i] * innovationInverse[3 * i + j] * innovation[j];
+            }
+        }
+        if (mahalanobis > VISION_GATE) return false;
+
+        multiply(covariance, innovationInverse, gain);
+
+        for (int i = 0; i < 3; i++) {
+            state[i] += gain[3 * i] * innovation[0] + gain[3 * i + 1] * innovation[1] + gain[3 * i + 2] * innovation[2];
+        }
+        state[2] = Angle.norm(state[2]);
+
+        // P -= K P
+        multiply(gain, covariance, product);
+        for (int i = 0; i < 9; i++) covariance[i] -= product[i];
+
+        return true;
+    }
+
+    private void record(long time, double dx, double dy, double dtheta, double imuHeading) {
+        int index = historyHead;
+
+        historyTimes[index] = time;
+        historyDeltas[index * 3] = dx;
+        historyDeltas[index * 3 + 1] = dy;
+        historyDeltas[index * 3 + 2] = dtheta;
+        historyImu[index] = imuHeading;
+        store(index);
+
+        historyHead = (historyHead + 1) % HISTORY;
+        historySize = Math.min(historySize + 1, HISTORY);
+    }
+
+    private void store(int index) {
+        System.arraycopy(state, 0, historyStates, index * 3, 3);
+        System.arraycopy(covariance, 0, historyCovariances, index * 9, 9);
+    }
+
+    // ring index of the tick `back` ticks before the newest one
+    private int historyIndex(int back) {
+        return (historyHead - 1 - back + 2 * HISTORY) % HISTORY;
+    }
+
+    private static void multiply(double[] a, double[] b, double[] out) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                out[3 * i + j] = a[3 * i] * b[j] + a[3 * i + 1] * b[3 + j] + a[3 * i + 2] * b[6 + j];
+            }
+        }
+    }
+
+    private static boolean invert3(double[] m, double[] out) {
+        double c00 = m[4] * m[8] - m[5] * m[7];
+        double c01 = m[5] * m[6] - m[3] * m[8];
+        double c02 = m[3] * m[7] - m[4] * m[6];
+        double determinant = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (Math.abs(determinant) < 1e-12) return false;
+
+        out[0] = c00 / determinant;
+        out[1] = (m[2] * m[7] - m[1] * m[8]) / determinant;
+        out[2] = (m[1] * m[5] - m[2] * m[4]) / determinant;
+        out[3] = c01 / determinant;
+        out[4] = (m[0] * m[8] - m[2] * m[6]) / determinant;
+        out[5] = (m[2] * m[3] - m[0] * m[5]) / determinant;
+        out[6] = c02 / determinant;
+        out[7] = (m[1] * m[6] - m[0] * m[7]) / determinant;
+        out[8] = (m[0] * m[4] - m[1] * m[3]) / determinant;
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package org.firstinspires.ftc.teamcode.drive;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+
+/**
+ * Drive encoder localizer for {@link SampleMecanumDrive} that reads the wheels through its primitive
+ * array methods. Same kinematics as Road Runner's MecanumDrive.MecanumLocalizer, including taking the
+ * heading from the IMU unless told not to.
+ */
+public class MecanumWheelLocalizer extends ArrayOdometryLocalizer {
+    private final SampleMecanumDrive drive;
+
+    private final double k;
+    private final double lateralMultiplier;
+    private final boolean useExternalHeading;
+
+    public MecanumWheelLocalizer(
+            SampleMecanumDrive drive, double trackWidth, double wheelBase, double lateralMultiplier,
+            boolean useExternalHeading
+    ) {
+        super(4);
+
+        this.drive = drive;
+        this.k = (trackWidth + wheelBase) / 2.0;
+        this.lateralMultiplier = lateralMultiplier;
+        this.useExternalHeading = useExternalHeading;
+    }
+
+    public MecanumWheelLocalizer(SampleMecanumDrive drive, double trackWidth, double wheelBase, double lateralMultiplier) {
+        this(drive, trackWidth, wheelBase, lateralMultiplier, true);
+    }
+
+    @Override
+    protected void fillWheelPositions(double[] positions) {
+        drive.fillWheelPositions(positions);
+    }
+
+    @Override
+    protected boolean fillWheelVelocities(double[] velocities) {
+        drive.fillWheelVelocities(velocities);
+        return true;
+    }
+
+    // wheels are ordered front left, rear left, rear right, front right, as in MecanumKinematics
+    @Override
+    protected void wheelToRobot(double[] wheels, double[] robot) {
+        double frontLeft = wheels[0];
+        double rearLeft = wheels[1];
+        double rearRight = wheels[2];
+        double frontRight = wheels[3];
+
+        robot[0] = (frontLeft + rearLeft + rearRight + frontRight) * 0.25;
+        robot[1] = (rearLeft + frontRight - frontLeft - rearRight) / lateralMultiplier * 0.25;
+        robot[2] = (rearRight + frontRight - frontLeft - rearLeft) / k * 0.25;
+    }
+
+    @Override
+    protected double getExternalHeading() {
+        if (!useExternalHeading) return Double.NaN;
+
+        return drive.getExternalHeading();
+    }
+
+    @Override
+    protected double getExternalHeadingVelocity() {
+        if (!useExternalHeading) return Double.NaN;
+
+        Double headingVelocity = drive.getExternalHeadingVelocity();
+        return headingVelocity == null ? Double.NaN : headingVelocity;
+    }
+
+    @Override
+    protected void onPoseEstimateSet(Pose2d pose) {
+        if (useExternalHeading) drive.setExternalHeading(pose.getHeading());
+    }
+}
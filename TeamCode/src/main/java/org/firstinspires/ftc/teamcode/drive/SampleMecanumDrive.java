@@ -1,24 +1,18 @@
 package org.firstinspires.ftc.teamcode.drive;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.acmerobotics.dashboard.config.Config;
 import com.acmerobotics.roadrunner.control.PIDCoefficients;
-import com.acmerobotics.roadrunner.drive.DriveSignal;
 import com.acmerobotics.roadrunner.drive.MecanumDrive;
-import com.acmerobotics.roadrunner.followers.HolonomicPIDVAFollower;
 import com.acmerobotics.roadrunner.followers.TrajectoryFollower;
 import com.acmerobotics.roadrunner.geometry.Pose2d;
 import com.acmerobotics.roadrunner.trajectory.Trajectory;
 import com.acmerobotics.roadrunner.trajectory.TrajectoryBuilder;
-import com.acmerobotics.roadrunner.trajectory.constraints.AngularVelocityConstraint;
-import com.acmerobotics.roadrunner.trajectory.constraints.MecanumVelocityConstraint;
-import com.acmerobotics.roadrunner.trajectory.constraints.MinVelocityConstraint;
-import com.acmerobotics.roadrunner.trajectory.constraints.ProfileAccelerationConstraint;
 import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryAccelerationConstraint;
 import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryVelocityConstraint;
 import com.qualcomm.hardware.bosch.BNO055IMU;
-import com.qualcomm.hardware.lynx.LynxModule;
 import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.DcMotorSimple;
@@ -27,21 +21,20 @@ import com.qualcomm.robotcore.hardware.PIDFCoefficients;
 import com.qualcomm.robotcore.hardware.VoltageSensor;
 import com.qualcomm.robotcore.hardware.configuration.typecontainers.MotorConfigurationType;
 
+import org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower;
 import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
 import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceBuilder;
 import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner;
 import org.firstinspires.ftc.teamcode.util.AxisDirection;
 import org.firstinspires.ftc.teamcode.util.BNO055IMUUtil;
+import org.firstinspires.ftc.teamcode.util.BulkReadCache;
+import org.firstinspires.ftc.teamcode.util.ImuSampler;
 import org.firstinspires.ftc.teamcode.util.LynxModuleUtil;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import static org.firstinspires.ftc.teamcode.drive.DriveConstants.MAX_ACCEL;
-import static org.firstinspires.ftc.teamcode.drive.DriveConstants.MAX_ANG_ACCEL;
-import static org.firstinspires.ftc.teamcode.drive.DriveConstants.MAX_ANG_VEL;
-import static org.firstinspires.ftc.teamcode.drive.DriveConstants.MAX_VEL;
 import static org.firstinspires.ftc.teamcode.drive.DriveConstants.MOTOR_VELO_PID;
 import static org.firstinspires.ftc.teamcode.drive.DriveConstants.RUN_USING_ENCODER;
 import static org.firstinspires.ftc.teamcode.drive.DriveConstants.TRACK_WIDTH;
@@ -49,6 +42,13 @@ import static org.firstinspires.ftc.teamcode.drive.DriveConstants.encoderTicksTo
 import static org.firstinspires.ftc.teamcode.drive.DriveConstants.kA;
 import static org.firstinspires.ftc.teamcode.drive.DriveConstants.kStatic;
 import static org.firstinspires.ftc.teamcode.drive.DriveConstants.kV;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_ACCEL_HEADING;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_ACCEL_X;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_ACCEL_Y;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_SIZE;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_HEADING;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_X;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_Y;
 
 /*
  * Simple mecanum drive hardware implementation for REV hardware.
@@ -56,12 +56,9 @@ import static org.firstinspires.ftc.teamcode.drive.DriveConstants.kV;
 @Config
 public class SampleMecanumDrive extends MecanumDrive {
 
-    // Pain
-    //public static PIDCoefficients HEADING_PID = new PIDCoefficients(9, 0, 0);
-    //public static PIDCoefficients TRANSLATIONAL_PID = new PIDCoefficients(.3, 0, 0);
-
-    public static PIDCoefficients HEADING_PID = new PIDCoefficients(6, 0, 0);
-    public static PIDCoefficients TRANSLATIONAL_PID = new PIDCoefficients(4, 0, 0);
+    // defaults live in MecanumDriveConfig, which the Benchmarks stand-in drive shares
+    public static PIDCoefficients HEADING_PID = MecanumDriveConfig.HEADING_PID;
+    public static PIDCoefficients TRANSLATIONAL_PID = MecanumDriveConfig.TRANSLATIONAL_PID;
 
     public static double LATERAL_MULTIPLIER = 1.1982;
 
@@ -69,10 +66,19 @@ public class SampleMecanumDrive extends MecanumDrive {
     public static double VY_WEIGHT = 1;
     public static double OMEGA_WEIGHT = 1;
 
+    // read the IMU on a background thread instead of inside update(); read when the drive is created,
+    // and implied by USE_EKF_LOCALIZER, which fuses the sampler's timestamped readings
+    public static boolean ASYNC_IMU = true;
+    public static double IMU_SAMPLE_RATE = 100; // Hz
+    public static double IMU_STALE_TIMEOUT = 0.05; // s, older samples are replaced by a blocking read
+
+    // fuse the wheels, the IMU and vision fixes with EkfLocalizer; read when the drive is created
+    public static boolean USE_EKF_LOCALIZER = false;
+
     private TrajectorySequenceRunner trajectorySequenceRunner;
 
-    private static final TrajectoryVelocityConstraint VEL_CONSTRAINT = getVelocityConstraint(MAX_VEL, MAX_ANG_VEL, TRACK_WIDTH);
-    private static final TrajectoryAccelerationConstraint ACCEL_CONSTRAINT = getAccelerationConstraint(MAX_ACCEL);
+    private static final TrajectoryVelocityConstraint VEL_CONSTRAINT = MecanumDriveConfig.VEL_CONSTRAINT;
+    private static final TrajectoryAccelerationConstraint ACCEL_CONSTRAINT = MecanumDriveConfig.ACCEL_CONSTRAINT;
 
     private TrajectoryFollower follower;
 
@@ -80,21 +86,25 @@ public class SampleMecanumDrive extends MecanumDrive {
     private List<DcMotorEx> motors;
 
     private BNO055IMU imu;
+    private ImuSampler imuSampler;
     private VoltageSensor batteryVoltageSensor;
 
+    private final BulkReadCache bulkReadCache;
+
+    private final double[] driveSignal = new double[SIGNAL_SIZE];
+
     public SampleMecanumDrive(HardwareMap hardwareMap) {
         super(kV, kA, kStatic, TRACK_WIDTH, TRACK_WIDTH, LATERAL_MULTIPLIER);
 
-        follower = new HolonomicPIDVAFollower(TRANSLATIONAL_PID, TRANSLATIONAL_PID, HEADING_PID,
+        follower = new TabulatedHolonomicPIDVAFollower(TRANSLATIONAL_PID, TRANSLATIONAL_PID, HEADING_PID,
                 new Pose2d(0.5, 0.5, Math.toRadians(5.0)), 0.5);
 
         LynxModuleUtil.ensureMinimumFirmwareVersion(hardwareMap);
 
         batteryVoltageSensor = hardwareMap.voltageSensor.iterator().next();
 
-        for (LynxModule module : hardwareMap.getAll(LynxModule.class)) {
-            module.setBulkCachingMode(LynxModule.BulkCachingMode.AUTO);
-        }
+        // MANUAL caching on every hub; update() starts each tick with a fresh snapshot
+        bulkReadCache = BulkReadCache.forAllHubs(hardwareMap);
 
         imu = hardwareMap.get(BNO055IMU.class, "imu");
         BNO055IMU.Parameters parameters = new BNO055IMU.Parameters();
@@ -102,6 +112,10 @@ public class SampleMecanumDrive extends MecanumDrive {
         BNO055IMUUtil.remapZAxis(imu, AxisDirection.NEG_X);
         imu.initialize(parameters);
 
+        if (ASYNC_IMU || USE_EKF_LOCALIZER) {
+            imuSampler = new ImuSampler(imu, IMU_SAMPLE_RATE, IMU_STALE_TIMEOUT);
+        }
+
         // not face up, remap the IMU axes so that the z-axis points upward (normal to the floor.)
         //
         //             | +Z axis
@@ -153,7 +167,18 @@ public class SampleMecanumDrive extends MecanumDrive {
         }
 
 
+        if (USE_EKF_LOCALIZER) {
+            // the filter does its own IMU fusion, so the wheels report their own heading
+            setLocalizer(new EkfLocalizer(
+                    new MecanumWheelLocalizer(this, TRACK_WIDTH, TRACK_WIDTH, LATERAL_MULTIPLIER, false),
+                    imuSampler));
+        } else {
+            // same kinematics as the default MecanumLocalizer, without boxing the wheel readings every tick
+            setLocalizer(new MecanumWheelLocalizer(this, TRACK_WIDTH, TRACK_WIDTH, LATERAL_MULTIPLIER));
+        }
+
         trajectorySequenceRunner = new TrajectorySequenceRunner(follower, HEADING_PID);
+        trajectorySequenceRunner.setReplanConstraints(VEL_CONSTRAINT, ACCEL_CONSTRAINT);
     }
 
     public TrajectoryBuilder trajectoryBuilder(Pose2d startPose) {
@@ -169,11 +194,7 @@ public class SampleMecanumDrive extends MecanumDrive {
     }
 
     public TrajectorySequenceBuilder trajectorySequenceBuilder(Pose2d startPose) {
-        return new TrajectorySequenceBuilder(
-                startPose,
-                VEL_CONSTRAINT, ACCEL_CONSTRAINT,
-                MAX_ANG_VEL, MAX_ANG_ACCEL
-        );
+        return MecanumDriveConfig.trajectorySequenceBuilder(startPose);
     }
 
     public void turnAsync(double angle) {
@@ -216,9 +237,53 @@ public class SampleMecanumDrive extends MecanumDrive {
     }
 
     public void update() {
+        clearBulkCache();
         updatePoseEstimate();
-        DriveSignal signal = trajectorySequenceRunner.update(getPoseEstimate(), getPoseVelocity());
-        if (signal != null) setDriveSignal(signal);
+        if (trajectorySequenceRunner.update(getPoseEstimate(), getPoseVelocity(), driveSignal)) {
+            setDriveSignal(driveSignal);
+        }
+    }
+
+    /**
+     * MecanumDrive.setDriveSignal() for a signal laid out by TabulatedHolonomicPIDVAFollower's SIGNAL_
+     * constants, without the wheel velocity and acceleration lists the DriveSignal version allocates.
+     */
+    public void setDriveSignal(double[] signal) {
+        // MecanumKinematics.robotToWheelVelocities() and robotToWheelAccelerations()
+        double k = (TRACK_WIDTH + TRACK_WIDTH) / 2.0;
+
+        double velX = signal[SIGNAL_VEL_X];
+        double velY = LATERAL_MULTIPLIER * signal[SIGNAL_VEL_Y];
+        double velTurn = k * signal[SIGNAL_VEL_HEADING];
+        double accelX = signal[SIGNAL_ACCEL_X];
+        double accelY = LATERAL_MULTIPLIER * signal[SIGNAL_ACCEL_Y];
+        double accelTurn = k * signal[SIGNAL_ACCEL_HEADING];
+
+        setMotorPowers(
+                feedforward(velX - velY - velTurn, accelX - accelY - accelTurn),
+                feedforward(velX + velY - velTurn, accelX + accelY - accelTurn),
+                feedforward(velX - velY + velTurn, accelX - accelY + accelTurn),
+                feedforward(velX + velY + velTurn, accelX + accelY + accelTurn)
+        );
+    }
+
+    // Kinematics.calculateMotorFeedforward()
+    private static double feedforward(double vel, double accel) {
+        double basePower = vel * kV + accel * kA;
+        return Math.abs(basePower) < 1e-6 ? 0.0 : basePower + Math.signum(basePower) * kStatic;
+    }
+
+    /**
+     * Starts a new control tick for everything on the hubs. {@link #update} does this itself; loops that
+     * read the drive or other motors without calling it must call this once per iteration instead, or
+     * they'll keep reading the same values.
+     */
+    public void clearBulkCache() {
+        bulkReadCache.clear();
+    }
+
+    public BulkReadCache getBulkReadCache() {
+        return bulkReadCache;
     }
 
     public void waitForIdle() {
@@ -273,23 +338,50 @@ public class SampleMecanumDrive extends MecanumDrive {
         setDrivePower(vel);
     }
 
+    /**
+     * Writes the wheel positions, in inches, into {@code positions} in the order front left, rear left,
+     * rear right, front right.
+     */
+    public void fillWheelPositions(double[] positions) {
+        // one counted bulk read per hub per tick, however many times the wheels are read
+        bulkReadCache.read();
+        for (int i = 0; i < motors.size(); i++) {
+            positions[i] = encoderTicksToInches(motors.get(i).getCurrentPosition());
+        }
+    }
+
+    /**
+     * Writes the wheel velocities, in inches per second, into {@code velocities} in the same order as
+     * {@link #fillWheelPositions}.
+     */
+    public void fillWheelVelocities(double[] velocities) {
+        bulkReadCache.read();
+        for (int i = 0; i < motors.size(); i++) {
+            velocities[i] = encoderTicksToInches(motors.get(i).getVelocity());
+        }
+    }
+
     @NonNull
     @Override
     public List<Double> getWheelPositions() {
-        List<Double> wheelPositions = new ArrayList<>();
-        for (DcMotorEx motor : motors) {
-            wheelPositions.add(encoderTicksToInches(motor.getCurrentPosition()));
-        }
-        return wheelPositions;
+        double[] positions = new double[motors.size()];
+        fillWheelPositions(positions);
+        return toList(positions);
     }
 
     @Override
     public List<Double> getWheelVelocities() {
-        List<Double> wheelVelocities = new ArrayList<>();
-        for (DcMotorEx motor : motors) {
-            wheelVelocities.add(encoderTicksToInches(motor.getVelocity()));
+        double[] velocities = new double[motors.size()];
+        fillWheelVelocities(velocities);
+        return toList(velocities);
+    }
+
+    private static List<Double> toList(double[] values) {
+        List<Double> list = new ArrayList<>(values.length);
+        for (double value : values) {
+            list.add(value);
         }
-        return wheelVelocities;
+        return list;
     }
 
     @Override
@@ -302,22 +394,32 @@ public class SampleMecanumDrive extends MecanumDrive {
 
     @Override
     public double getRawExternalHeading() {
+        if (imuSampler != null) return imuSampler.latest().heading;
+
         return imu.getAngularOrientation().firstAngle;
     }
 
     @Override
     public Double getExternalHeadingVelocity() {
+        if (imuSampler != null) return imuSampler.latest().headingVelocity;
+
         return (double) imu.getAngularVelocity().zRotationRate;
     }
 
+    /**
+     * The background IMU reader, or null if neither {@link #ASYNC_IMU} nor {@link #USE_EKF_LOCALIZER} was
+     * on when the drive was created.
+     */
+    public @Nullable
+    ImuSampler getImuSampler() {
+        return imuSampler;
+    }
+
     public static TrajectoryVelocityConstraint getVelocityConstraint(double maxVel, double maxAngularVel, double trackWidth) {
-        return new MinVelocityConstraint(Arrays.asList(
-                new AngularVelocityConstraint(maxAngularVel),
-                new MecanumVelocityConstraint(maxVel, trackWidth)
-        ));
+        return MecanumDriveConfig.getVelocityConstraint(maxVel, maxAngularVel, trackWidth);
     }
 
     public static TrajectoryAccelerationConstraint getAccelerationConstraint(double maxAccel) {
-        return new ProfileAccelerationConstraint(maxAccel);
+        return MecanumDriveConfig.getAccelerationConstraint(maxAccel);
     }
 }
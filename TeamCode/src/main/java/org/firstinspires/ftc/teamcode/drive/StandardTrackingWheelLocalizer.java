@@ -4,7 +4,6 @@ import androidx.annotation.NonNull;
 
 import com.acmerobotics.dashboard.config.Config;
 import com.acmerobotics.roadrunner.geometry.Pose2d;
-import com.acmerobotics.roadrunner.localization.ThreeTrackingWheelLocalizer;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import org.firstinspires.ftc.teamcode.util.Encoder;
@@ -24,9 +23,11 @@ import java.util.List;
  *    |              |
  *    \--------------/
  *
+ * Same math as Road Runner's ThreeTrackingWheelLocalizer, with the wheel-to-robot matrix inverted once up
+ * front instead of solving a boxed linear system every tick.
  */
 @Config
-public class StandardTrackingWheelLocalizer extends ThreeTrackingWheelLocalizer {
+public class StandardTrackingWheelLocalizer extends ArrayOdometryLocalizer {
     public static double TICKS_PER_REV = 0;
     public static double WHEEL_RADIUS = 2; // in
     public static double GEAR_RATIO = 1; // output (wheel) speed / input (encoder) speed
@@ -36,12 +37,17 @@ public class StandardTrackingWheelLocalizer extends ThreeTrackingWheelLocalizer
 
     private Encoder leftEncoder, rightEncoder, frontEncoder;
 
+    // row-major inverse of the matrix taking robot motion to wheel motion
+    private final double[] wheelToRobot;
+
     public StandardTrackingWheelLocalizer(HardwareMap hardwareMap) {
-        super(Arrays.asList(
+        super(3);
+
+        wheelToRobot = invertWheelMatrix(
                 new Pose2d(0, LATERAL_DISTANCE / 2, 0), // left
                 new Pose2d(0, -LATERAL_DISTANCE / 2, 0), // right
                 new Pose2d(FORWARD_OFFSET, 0, Math.toRadians(90)) // front
-        ));
+        );
 
         leftEncoder = new Encoder(hardwareMap.get(DcMotorEx.class, "leftEncoder"));
         rightEncoder = new Encoder(hardwareMap.get(DcMotorEx.class, "rightEncoder"));
@@ -54,27 +60,72 @@ public class StandardTrackingWheelLocalizer extends ThreeTrackingWheelLocalizer
         return WHEEL_RADIUS * 2 * Math.PI * GEAR_RATIO * ticks / TICKS_PER_REV;
     }
 
-    @NonNull
+    // each wheel measures the robot's motion along its heading, offset by the rotation about its position
+    private static double[] invertWheelMatrix(Pose2d... wheelPoses) {
+        double[] m = new double[9];
+        for (int i = 0; i < 3; i++) {
+            double cos = Math.cos(wheelPoses[i].getHeading());
+            double sin = Math.sin(wheelPoses[i].getHeading());
+
+            m[3 * i] = cos;
+            m[3 * i + 1] = sin;
+            m[3 * i + 2] = wheelPoses[i].getX() * sin - wheelPoses[i].getY() * cos;
+        }
+
+        double c00 = m[4] * m[8] - m[5] * m[7];
+        double c01 = m[5] * m[6] - m[3] * m[8];
+        double c02 = m[3] * m[7] - m[4] * m[6];
+        double determinant = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (Math.abs(determinant) < 1e-9) {
+            throw new IllegalArgumentException("The specified configuration cannot support full localization");
+        }
+
+        return new double[] {
+                c00 / determinant, (m[2] * m[7] - m[1] * m[8]) / determinant, (m[1] * m[5] - m[2] * m[4]) / determinant,
+                c01 / determinant, (m[0] * m[8] - m[2] * m[6]) / determinant, (m[2] * m[3] - m[0] * m[5]) / determinant,
+                c02 / determinant, (m[1] * m[6] - m[0] * m[7]) / determinant, (m[0] * m[4] - m[1] * m[3]) / determinant
+        };
+    }
+
     @Override
-    public List<Double> getWheelPositions() {
-        return Arrays.asList(
-                encoderTicksToInches(leftEncoder.getCurrentPosition()),
-                encoderTicksToInches(rightEncoder.getCurrentPosition()),
-                encoderTicksToInches(frontEncoder.getCurrentPosition())
-        );
+    protected void fillWheelPositions(double[] positions) {
+        positions[0] = encoderTicksToInches(leftEncoder.getCurrentPosition());
+        positions[1] = encoderTicksToInches(rightEncoder.getCurrentPosition());
+        positions[2] = encoderTicksToInches(frontEncoder.getCurrentPosition());
     }
 
-    @NonNull
     @Override
-    public List<Double> getWheelVelocities() {
+    protected boolean fillWheelVelocities(double[] velocities) {
         // TODO: If your encoder velocity can exceed 32767 counts / second (such as the REV Through Bore and other
         //  competing magnetic encoders), change Encoder.getRawVelocity() to Encoder.getCorrectedVelocity() to enable a
         //  compensation method
 
-        return Arrays.asList(
-                encoderTicksToInches(leftEncoder.getRawVelocity()),
-                encoderTicksToInches(rightEncoder.getRawVelocity()),
-                encoderTicksToInches(frontEncoder.getRawVelocity())
-        );
+        velocities[0] = encoderTicksToInches(leftEncoder.getRawVelocity());
+        velocities[1] = encoderTicksToInches(rightEncoder.getRawVelocity());
+        velocities[2] = encoderTicksToInches(frontEncoder.getRawVelocity());
+        return true;
+    }
+
+    @Override
+    protected void wheelToRobot(double[] wheels, double[] robot) {
+        for (int row = 0; row < 3; row++) {
+            robot[row] = wheelToRobot[3 * row] * wheels[0]
+                    + wheelToRobot[3 * row + 1] * wheels[1]
+                    + wheelToRobot[3 * row + 2] * wheels[2];
+        }
+    }
+
+    @NonNull
+    public List<Double> getWheelPositions() {
+        double[] positions = new double[3];
+        fillWheelPositions(positions);
+        return Arrays.asList(positions[0], positions[1], positions[2]);
+    }
+
+    @NonNull
+    public List<Double> getWheelVelocities() {
+        double[] velocities = new double[3];
+        fillWheelVelocities(velocities);
+        return Arrays.asList(velocities[0], velocities[1], velocities[2]);
     }
 }
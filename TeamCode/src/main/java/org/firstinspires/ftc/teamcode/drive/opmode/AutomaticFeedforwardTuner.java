@@ -123,6 +123,7 @@ public class AutomaticFeedforwardTuner extends LinearOpMode {
             powerSamples.add(power);
 
             drive.setDrivePower(new Pose2d(power, 0.0, 0.0));
+            drive.clearBulkCache();
             drive.updatePoseEstimate();
         }
         drive.setDrivePower(new Pose2d(0.0, 0.0, 0.0));
@@ -199,6 +200,7 @@ public class AutomaticFeedforwardTuner extends LinearOpMode {
                 positionSamples.add(drive.getPoseEstimate().getX());
                 powerSamples.add(MAX_POWER);
 
+                drive.clearBulkCache();
                 drive.updatePoseEstimate();
             }
             drive.setDrivePower(new Pose2d(0.0, 0.0, 0.0));
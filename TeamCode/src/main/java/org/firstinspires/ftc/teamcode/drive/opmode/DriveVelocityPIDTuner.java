@@ -124,6 +124,7 @@ public class DriveVelocityPIDTuner extends LinearOpMode {
                     double targetPower = kV * motionState.getV();
                     drive.setDrivePower(new Pose2d(targetPower, 0, 0));
 
+                    drive.clearBulkCache();
                     List<Double> velocities = drive.getWheelVelocities();
 
                     // update telemetry
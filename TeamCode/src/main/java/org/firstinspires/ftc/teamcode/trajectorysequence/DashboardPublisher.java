@@ -0,0 +1,323 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import androidx.annotation.Nullable;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.canvas.Canvas;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.profile.MotionState;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.SequenceSegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TrajectorySegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TurnSegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.WaitSegment;
+import org.firstinspires.ftc.teamcode.util.DashboardUtil;
+import org.firstinspires.ftc.teamcode.util.PoseHistory;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner.COLOR_ACTIVE_TRAJECTORY;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner.COLOR_ACTIVE_TURN;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner.COLOR_ACTIVE_WAIT;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner.COLOR_INACTIVE_TRAJECTORY;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner.COLOR_INACTIVE_TURN;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner.COLOR_INACTIVE_WAIT;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceRunner.POSE_HISTORY_LIMIT;
+
+/**
+ * Builds and sends the dashboard packets for a {@link TrajectorySequenceRunner} off the control loop.
+ *
+ * The control loop records one snapshot per tick into a fixed-size ring with {@link #offer}, which
+ * never blocks or allocates. A single publisher thread wakes up once per transmission interval, folds
+ * every snapshot it hasn't seen into the pose history and draws the newest one. If the loop laps the
+ * publisher, the overwritten snapshots are dropped rather than slowing the loop down.
+ */
+class DashboardPublisher {
+    private static final int CAPACITY = 64; // must be a power of two
+    private static final int MASK = CAPACITY - 1;
+
+    private static final long IDLE_TIMEOUT_MS = 1000;
+
+    // used when POSE_HISTORY_LIMIT is -1; the history is preallocated, so it can't be truly unbounded
+    private static final int MAX_POSE_HISTORY = 10000;
+
+    // the dashboard serializes packets on its own thread one transmission interval after they're sent, so
+    // the polyline arrays of the packets still queued there can't be refilled yet; this many sets rotate
+    private static final int HISTORY_BUFFERS = 3;
+
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int HEADING = 2;
+    private static final int ERROR_X = 3;
+    private static final int ERROR_Y = 4;
+    private static final int ERROR_HEADING = 5;
+    private static final int DELTA_TIME = 6;
+    private static final int TIMESTAMP = 7;
+    private static final int FIELDS = 8;
+
+    private final FtcDashboard dashboard;
+    private final long transmissionInterval;
+    private final MarkerExecutor markerExecutor;
+
+    // slot contents; every access is volatile so the publisher can tell when a slot was overwritten mid-read
+    private final AtomicLongArray values = new AtomicLongArray(CAPACITY * FIELDS);
+    private final AtomicReferenceArray<TrajectorySequence> sequences = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicReferenceArray<SequenceSegment> segments = new AtomicReferenceArray<>(CAPACITY);
+
+    // number of snapshots ever offered; only the control loop writes it
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile SequenceProfile profile;
+
+    // owned by the publisher thread
+    private long tail;
+    private final PoseHistory poseHistory;
+    private final double[][] historyXPoints;
+    private final double[][] historyYPoints;
+    private int historyBuffer;
+
+    DashboardPublisher(FtcDashboard dashboard, long transmissionInterval, MarkerExecutor markerExecutor) {
+        this.dashboard = dashboard;
+        this.transmissionInterval = transmissionInterval;
+        this.markerExecutor = markerExecutor;
+
+        poseHistory = new PoseHistory(POSE_HISTORY_LIMIT > -1 ? Math.max(POSE_HISTORY_LIMIT, 1) : MAX_POSE_HISTORY);
+        historyXPoints = new double[HISTORY_BUFFERS][poseHistory.capacity()];
+        historyYPoints = new double[HISTORY_BUFFERS][poseHistory.capacity()];
+
+        dashboard.setTelemetryTransmissionInterval((int) transmissionInterval);
+    }
+
+    /**
+     * Records the state of the current control tick. Must only be called from a single thread.
+     */
+    void offer(
+            double timestamp,
+            @Nullable TrajectorySequence sequence, @Nullable SequenceSegment segment, double deltaTime,
+            double x, double y, double heading,
+            double errorX, double errorY, double errorHeading
+    ) {
+        long position = head.get();
+        int slot = (int) (position & MASK);
+        int base = slot * FIELDS;
+
+        values.set(base + X, Double.doubleToRawLongBits(x));
+        values.set(base + Y, Double.doubleToRawLongBits(y));
+        values.set(base + HEADING, Double.doubleToRawLongBits(heading));
+        values.set(base + ERROR_X, Double.doubleToRawLongBits(errorX));
+        values.set(base + ERROR_Y, Double.doubleToRawLongBits(errorY));
+        values.set(base + ERROR_HEADING, Double.doubleToRawLongBits(errorHeading));
+        values.set(base + DELTA_TIME, Double.doubleToRawLongBits(deltaTime));
+        values.set(base + TIMESTAMP, Double.doubleToRawLongBits(timestamp));
+        sequences.set(slot, sequence);
+        segments.set(slot, segment);
+
+        head.set(position + 1);
+
+        if (!running.get() && running.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::run, "TrajectorySequenceDashboard");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Shows the summary of a finished sequence's profile until the next one finishes.
+     */
+    void setProfile(SequenceProfile profile) {
+        this.profile = profile;
+    }
+
+    private double value(int slot, int field) {
+        return Double.longBitsToDouble(values.get(slot * FIELDS + field));
+    }
+
+    // a slot read for `position` is only trustworthy if the loop hasn't started rewriting it since
+    private boolean isIntact(long position) {
+        return head.get() - position < CAPACITY;
+    }
+
+    private void run() {
+        long idleTime = 0;
+
+        while (true) {
+            try {
+                Thread.sleep(transmissionInterval);
+            } catch (InterruptedException e) {
+                running.set(false);
+                return;
+            }
+
+            if (head.get() == tail) {
+                idleTime += transmissionInterval;
+
+                // the opmode that owned this runner is most likely gone; offer() restarts us if not
+                if (idleTime >= IDLE_TIMEOUT_MS) {
+                    running.set(false);
+
+                    if (head.get() == tail || !running.compareAndSet(false, true)) return;
+                }
+
+                continue;
+            }
+
+            idleTime = 0;
+
+            publish();
+        }
+    }
+
+    private void publish() {
+        long end = head.get();
+        long latest = end - 1;
+
+        for (long position = Math.max(tail, end - CAPACITY); position < end; position++) {
+            int slot = (int) (position & MASK);
+            double x = value(slot, X);
+            double y = value(slot, Y);
+            double heading = value(slot, HEADING);
+            double timestamp = value(slot, TIMESTAMP);
+
+            if (!isIntact(position)) continue;
+
+            poseHistory.add(x, y, heading, timestamp);
+        }
+
+        tail = end;
+
+        int slot = (int) (latest & MASK);
+        TrajectorySequence sequence = sequences.get(slot);
+        SequenceSegment segment = segments.get(slot);
+        double deltaTime = value(slot, DELTA_TIME);
+        Pose2d poseEstimate = new Pose2d(value(slot, X), value(slot, Y), value(slot, HEADING));
+        Pose2d poseError = new Pose2d(value(slot, ERROR_X), value(slot, ERROR_Y), value(slot, ERROR_HEADING));
+
+        // the loop lapped us while we were reading; a newer frame will be along shortly
+        if (!isIntact(latest)) return;
+
+        TelemetryPacket packet = new TelemetryPacket();
+        Canvas fieldOverlay = packet.fieldOverlay();
+
+        packet.put("x", poseEstimate.getX());
+        packet.put("y", poseEstimate.getY());
+        packet.put("heading (deg)", Math.toDegrees(poseEstimate.getHeading()));
+
+        packet.put("xError", poseError.getX());
+        packet.put("yError", poseError.getY());
+        packet.put("headingError (deg)", Math.toDegrees(poseError.getHeading()));
+
+        SequenceProfile profile = this.profile;
+        if (profile != null) {
+            packet.put("last sequence", profile.summary());
+        }
+
+        putMarkerLatencies(packet);
+
+        draw(fieldOverlay, sequence, segment, getTargetPose(segment, deltaTime), poseEstimate);
+
+        dashboard.sendTelemetryPacket(packet);
+    }
+
+    private void putMarkerLatencies(TelemetryPacket packet) {
+        packet.put("markers pending", markerExecutor.getPendingCount());
+
+        MarkerExecutor.Latency[] latencies = markerExecutor.getLatencies();
+        for (int i = 0; i < latencies.length; i++) {
+            MarkerExecutor.Latency latency = latencies[i];
+            if (latency == null) continue;
+
+            packet.put("marker " + i + " (ms)", String.format(Locale.US,
+                    "queue %.1f mean, %.1f max; run %.1f mean, %.1f max",
+                    latency.getMeanQueueDelay(), latency.getMaxQueueDelay(),
+                    latency.getMeanRunTime(), latency.getMaxRunTime()));
+        }
+    }
+
+    private static @Nullable
+    Pose2d getTargetPose(SequenceSegment segment, double deltaTime) {
+        if (segment instanceof TrajectorySegment) {
+            TrajectoryTable table = ((TrajectorySegment) segment).getTable();
+
+            return table != null ? table.get(deltaTime) : ((TrajectorySegment) segment).getTrajectory().get(deltaTime);
+        } else if (segment instanceof TurnSegment) {
+            MotionState targetState = ((TurnSegment) segment).getMotionProfile().get(deltaTime);
+
+            Pose2d startPose = segment.getStartPose();
+            return startPose.copy(startPose.getX(), startPose.getY(), targetState.getX());
+        } else if (segment instanceof WaitSegment) {
+            return segment.getStartPose();
+        }
+
+        return null;
+    }
+
+    private void draw(
+            Canvas fieldOverlay,
+            TrajectorySequence sequence, SequenceSegment currentSegment,
+            Pose2d targetPose, Pose2d poseEstimate
+    ) {
+        if (sequence != null) {
+            for (int i = 0; i < sequence.size(); i++) {
+                SequenceSegment segment = sequence.get(i);
+
+                if (segment instanceof TrajectorySegment) {
+                    fieldOverlay.setStrokeWidth(1);
+                    fieldOverlay.setStroke(COLOR_INACTIVE_TRAJECTORY);
+
+                    DashboardUtil.drawSampledPath(fieldOverlay, ((TrajectorySegment) segment).getTrajectory().getPath());
+                } else if (segment instanceof TurnSegment) {
+                    Pose2d pose = segment.getStartPose();
+
+                    fieldOverlay.setFill(COLOR_INACTIVE_TURN);
+                    fieldOverlay.fillCircle(pose.getX(), pose.getY(), 2);
+                } else if (segment instanceof WaitSegment) {
+                    Pose2d pose = segment.getStartPose();
+
+                    fieldOverlay.setStrokeWidth(1);
+                    fieldOverlay.setStroke(COLOR_INACTIVE_WAIT);
+                    fieldOverlay.strokeCircle(pose.getX(), pose.getY(), 3);
+                }
+            }
+        }
+
+        if (currentSegment != null) {
+            if (currentSegment instanceof TrajectorySegment) {
+                fieldOverlay.setStrokeWidth(1);
+                fieldOverlay.setStroke(COLOR_ACTIVE_TRAJECTORY);
+
+                DashboardUtil.drawSampledPath(fieldOverlay, ((TrajectorySegment) currentSegment).getTrajectory().getPath());
+            } else if (currentSegment instanceof TurnSegment) {
+                Pose2d pose = currentSegment.getStartPose();
+
+                fieldOverlay.setFill(COLOR_ACTIVE_TURN);
+                fieldOverlay.fillCircle(pose.getX(), pose.getY(), 3);
+            } else if (currentSegment instanceof WaitSegment) {
+                Pose2d pose = currentSegment.getStartPose();
+
+                fieldOverlay.setStrokeWidth(1);
+                fieldOverlay.setStroke(COLOR_ACTIVE_WAIT);
+                fieldOverlay.strokeCircle(pose.getX(), pose.getY(), 3);
+            }
+        }
+
+        if (targetPose != null) {
+            fieldOverlay.setStrokeWidth(1);
+            fieldOverlay.setStroke("#4CAF50");
+            DashboardUtil.drawRobot(fieldOverlay, targetPose);
+        }
+
+        fieldOverlay.setStroke("#3F51B5");
+        DashboardUtil.drawPoseHistory(fieldOverlay, poseHistory,
+                historyXPoints[historyBuffer], historyYPoints[historyBuffer]);
+        historyBuffer = (historyBuffer + 1) % HISTORY_BUFFERS;
+
+        fieldOverlay.setStroke("#3F51B5");
+        DashboardUtil.drawRobot(fieldOverlay, poseEstimate);
+    }
+}
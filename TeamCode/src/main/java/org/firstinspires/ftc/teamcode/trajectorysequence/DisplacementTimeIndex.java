@@ -0,0 +1,236 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import com.acmerobotics.roadrunner.profile.MotionProfile;
+import com.acmerobotics.roadrunner.profile.MotionSegment;
+import com.acmerobotics.roadrunner.profile.MotionState;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.SequenceSegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TrajectorySegment;
+
+import java.util.List;
+
+/**
+ * Maps between time along a sequence and displacement along its trajectories in logarithmic time.
+ * Displacement only advances during trajectory segments; turns and waits take time but cover none.
+ *
+ * Segments are found by binary search over their cumulative start times and displacements. Within a
+ * trajectory, the motion profile's own piecewise-polynomial segments are searched the same way and the
+ * one containing the target is inverted in closed form, so results are exact up to floating point
+ * (about 1e-9 s) rather than up to a bisection tolerance. Segments with nonzero jerk, which Road Runner's
+ * trajectory profiles don't produce, fall back to bisecting that one segment.
+ */
+public class DisplacementTimeIndex {
+    private final double[] startTimes;
+    private final double[] startDisplacements;
+    private final ProfileIndex[] profiles; // null for segments that aren't trajectories
+
+    private final double duration;
+    private final double length;
+
+    public DisplacementTimeIndex(List<SequenceSegment> segments) {
+        int count = segments.size();
+
+        startTimes = new double[count];
+        startDisplacements = new double[count];
+        profiles = new ProfileIndex[count];
+
+        double time = 0;
+        double displacement = 0;
+        for (int i = 0; i < count; i++) {
+            SequenceSegment segment = segments.get(i);
+
+            startTimes[i] = time;
+            startDisplacements[i] = displacement;
+
+            if (segment instanceof TrajectorySegment) {
+                profiles[i] = new ProfileIndex(((TrajectorySegment) segment).getTrajectory().getProfile());
+                displacement += ((TrajectorySegment) segment).getTrajectory().getPath().length();
+            }
+
+            time += segment.getDuration();
+        }
+
+        duration = time;
+        length = displacement;
+    }
+
+    public double duration() {
+        return duration;
+    }
+
+    /**
+     * Total displacement covered by the sequence's trajectories.
+     */
+    public double length() {
+        return length;
+    }
+
+    /**
+     * Time at which the sequence reaches the given displacement. A displacement shared by the end of one
+     * trajectory and the start of the next resolves to the start of the next one, and anything outside
+     * the sequence clamps to the start of the first trajectory or the end of the last.
+     */
+    public double displacementToTime(double s) {
+        int last = lastTrajectory();
+        if (last == -1) return 0.0;
+
+        if (s >= length) {
+            return startTimes[last] + profiles[last].duration;
+        }
+
+        // first trajectory that ends past s; trajectories end where the next one starts
+        int lo = 0;
+        int hi = profiles.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (endDisplacement(mid) > s) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+
+        // turns and waits in front of it cover no distance, skip to the trajectory itself
+        while (profiles[lo] == null) lo++;
+
+        return startTimes[lo] + profiles[lo].displacementToTime(Math.max(s - startDisplacements[lo], 0.0));
+    }
+
+    /**
+     * Displacement along the sequence's trajectories at the given time, clamped to the sequence.
+     */
+    public double timeToDisplacement(double t) {
+        if (startTimes.length == 0 || t <= 0) return 0.0;
+        if (t >= duration) return length;
+
+        int i = floor(startTimes, startTimes.length, t);
+
+        if (profiles[i] == null) return startDisplacements[i];
+
+        return startDisplacements[i] + profiles[i].timeToDisplacement(t - startTimes[i]);
+    }
+
+    private double endDisplacement(int i) {
+        return i + 1 < startDisplacements.length ? startDisplacements[i + 1] : length;
+    }
+
+    private int lastTrajectory() {
+        for (int i = profiles.length - 1; i >= 0; i--) {
+            if (profiles[i] != null) return i;
+        }
+
+        return -1;
+    }
+
+    // index of the last element of the sorted array that is <= value, or 0 if there is none
+    private static int floor(double[] sorted, int size, double value) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (sorted[mid] <= value) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * A motion profile's segments unpacked into primitive arrays.
+     */
+    private static class ProfileIndex {
+        private static final double EPSILON = 1e-12;
+
+        private final int size;
+        private final double[] t0;
+        private final double[] x0;
+        private final double[] v0;
+        private final double[] a0;
+        private final double[] j0;
+        private final double[] dt;
+
+        private final double duration;
+
+        ProfileIndex(MotionProfile profile) {
+            List<MotionSegment> segments = profile.getSegments();
+
+            size = segments.size();
+            t0 = new double[size];
+            x0 = new double[size];
+            v0 = new double[size];
+            a0 = new double[size];
+            j0 = new double[size];
+            dt = new double[size];
+
+            double time = 0;
+            for (int i = 0; i < size; i++) {
+                MotionSegment segment = segments.get(i);
+                MotionState start = segment.getStart();
+
+                t0[i] = time;
+                x0[i] = start.getX();
+                v0[i] = start.getV();
+                a0[i] = start.getA();
+                j0[i] = start.getJ();
+                dt[i] = segment.getDt();
+
+                time += segment.getDt();
+            }
+
+            duration = time;
+        }
+
+        double timeToDisplacement(double t) {
+            if (size == 0) return 0.0;
+
+            int i = floor(t0, size, t);
+            double tau = Math.min(Math.max(t - t0[i], 0.0), dt[i]);
+
+            return position(i, tau);
+        }
+
+        // assumes the position is monotonic increasing, like Road Runner's TrajectoryGenerator
+        double displacementToTime(double s) {
+            if (size == 0) return 0.0;
+
+            int i = floor(x0, size, s);
+            double ds = s - x0[i];
+
+            double tau;
+            if (Math.abs(j0[i]) > EPSILON) {
+                tau = bisect(i, s);
+            } else {
+                // x0 + v * tau + a / 2 * tau^2 = s, in the form that doesn't cancel when a is small
+                double v = v0[i];
+                double discriminant = Math.max(v * v + 2 * a0[i] * ds, 0.0);
+                double denominator = v + Math.sqrt(discriminant);
+
+                tau = denominator > EPSILON ? 2 * ds / denominator : 0.0;
+            }
+
+            return t0[i] + Math.min(Math.max(tau, 0.0), dt[i]);
+        }
+
+        private double position(int i, double tau) {
+            return x0[i] + tau * (v0[i] + tau * (a0[i] / 2 + tau * j0[i] / 6));
+        }
+
+        private double bisect(int i, double s) {
+            double lo = 0.0;
+            double hi = dt[i];
+            while (hi - lo > 1e-9) {
+                double mid = 0.5 * (lo + hi);
+                if (position(i, mid) > s) {
+                    hi = mid;
+                } else {
+                    lo = mid;
+                }
+            }
+
+            return 0.5 * (lo + hi);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import com.acmerobotics.roadrunner.trajectory.MarkerCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs marker callbacks on a single background thread so that their hub I/O doesn't stretch the control
+ * loop. Callbacks run one at a time, in the order they were dispatched. Callbacks wrapped with
+ * {@link #synchronous(MarkerCallback)} are never handed to the executor; they run inline on the loop
+ * thread as soon as their marker fires, so they may overtake queued asynchronous ones.
+ *
+ * Callbacks dispatched by a thread that has since been interrupted or has died (i.e. the opmode
+ * stopped) are skipped instead of commanding hardware after the fact.
+ *
+ * Besides the totals over every asynchronous callback, latency is kept per marker, keyed by the index
+ * the runner passes in (the marker's position in the sequence, in firing order), for inline and
+ * asynchronous callbacks alike.
+ */
+public class MarkerExecutor {
+    private static final long IDLE_TIMEOUT_MS = 1000;
+
+    /**
+     * Marks a callback as one that must run inline on the control loop.
+     */
+    public static MarkerCallback synchronous(MarkerCallback callback) {
+        return new SynchronousCallback(callback);
+    }
+
+    private static class SynchronousCallback implements MarkerCallback {
+        private final MarkerCallback callback;
+
+        SynchronousCallback(MarkerCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onMarkerReached() {
+            callback.onMarkerReached();
+        }
+    }
+
+    public static boolean isSynchronous(MarkerCallback callback) {
+        return callback instanceof SynchronousCallback;
+    }
+
+    /**
+     * Latency of one marker's callback, in ms, over every time it has run.
+     */
+    public static class Latency {
+        private long runs;
+        private double totalQueueDelay;
+        private double maxQueueDelay;
+        private double totalRunTime;
+        private double maxRunTime;
+
+        Latency() {
+        }
+
+        Latency(Latency other) {
+            runs = other.runs;
+            totalQueueDelay = other.totalQueueDelay;
+            maxQueueDelay = other.maxQueueDelay;
+            totalRunTime = other.totalRunTime;
+            maxRunTime = other.maxRunTime;
+        }
+
+        void record(double queueDelay, double runTime) {
+            runs++;
+            totalQueueDelay += queueDelay;
+            maxQueueDelay = Math.max(maxQueueDelay, queueDelay);
+            totalRunTime += runTime;
+            maxRunTime = Math.max(maxRunTime, runTime);
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        /**
+         * Mean time between the marker firing and its callback starting; always 0 for inline callbacks.
+         */
+        public double getMeanQueueDelay() {
+            return runs == 0 ? 0 : totalQueueDelay / runs;
+        }
+
+        public double getMaxQueueDelay() {
+            return maxQueueDelay;
+        }
+
+        public double getMeanRunTime() {
+            return runs == 0 ? 0 : totalRunTime / runs;
+        }
+
+        public double getMaxRunTime() {
+            return maxRunTime;
+        }
+    }
+
+    // a single thread and a FIFO queue is what guarantees callbacks run in firing order
+    private final ThreadPoolExecutor executor;
+
+    private long dispatched;
+    private long completed;
+    private long skipped;
+    private double totalQueueDelay;
+    private double maxQueueDelay;
+    private double totalRunTime;
+    private double maxRunTime;
+
+    // indexed by marker; markers that haven't run yet are null
+    private final List<Latency> latencies = new ArrayList<>();
+
+    public MarkerExecutor() {
+        executor = new ThreadPoolExecutor(
+                1, 1,
+                IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "TrajectorySequenceMarkers");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the callback inline if it's marked synchronous, otherwise queues it behind any callbacks
+     * dispatched before it. Its latency is recorded under {@code marker}.
+     */
+    public void dispatch(MarkerCallback callback, int marker) {
+        if (isSynchronous(callback)) {
+            runInline(callback, marker);
+            return;
+        }
+
+        Thread owner = Thread.currentThread();
+        long dispatchTime = System.nanoTime();
+
+        synchronized (this) {
+            dispatched++;
+        }
+
+        executor.execute(() -> run(callback, marker, owner, dispatchTime));
+    }
+
+    /**
+     * Runs the callback on the calling thread, recording its run time under {@code marker}.
+     */
+    public void runInline(MarkerCallback callback, int marker) {
+        long startTime = System.nanoTime();
+        try {
+            callback.onMarkerReached();
+        } finally {
+            double runTime = (System.nanoTime() - startTime) / 1e6;
+
+            synchronized (this) {
+                latency(marker).record(0, runTime);
+            }
+        }
+    }
+
+    private Latency latency(int marker) {
+        while (latencies.size() <= marker) {
+            latencies.add(null);
+        }
+
+        Latency latency = latencies.get(marker);
+        if (latency == null) {
+            latency = new Latency();
+            latencies.set(marker, latency);
+        }
+
+        return latency;
+    }
+
+    private void run(MarkerCallback callback, int marker, Thread owner, long dispatchTime) {
+        if (owner.isInterrupted() || !owner.isAlive()) {
+            synchronized (this) {
+                skipped++;
+            }
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        try {
+            callback.onMarkerReached();
+        } finally {
+            long endTime = System.nanoTime();
+
+            double queueDelay = (startTime - dispatchTime) / 1e6;
+            double runTime = (endTime - startTime) / 1e6;
+
+            synchronized (this) {
+                completed++;
+                totalQueueDelay += queueDelay;
+                maxQueueDelay = Math.max(maxQueueDelay, queueDelay);
+                totalRunTime += runTime;
+                maxRunTime = Math.max(maxRunTime, runTime);
+
+                latency(marker).record(queueDelay, runTime);
+            }
+        }
+    }
+
+    /**
+     * Number of asynchronous callbacks dispatched but not yet finished or skipped.
+     */
+    public synchronized long getPendingCount() {
+        return dispatched - completed - skipped;
+    }
+
+    public synchronized long getCompletedCount() {
+        return completed;
+    }
+
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * Mean time in ms between a marker firing and its callback starting.
+     */
+    public synchronized double getMeanQueueDelay() {
+        return completed == 0 ? 0 : totalQueueDelay / completed;
+    }
+
+    public synchronized double getMaxQueueDelay() {
+        return maxQueueDelay;
+    }
+
+    /**
+     * Mean time in ms spent inside a callback.
+     */
+    public synchronized double getMeanRunTime() {
+        return completed == 0 ? 0 : totalRunTime / completed;
+    }
+
+    public synchronized double getMaxRunTime() {
+        return maxRunTime;
+    }
+
+    /**
+     * Copy of the latency of every marker up to the highest one that has run; markers that haven't
+     * run yet are null.
+     */
+    public synchronized Latency[] getLatencies() {
+        Latency[] copy = new Latency[latencies.size()];
+        for (int i = 0; i < copy.length; i++) {
+            Latency latency = latencies.get(i);
+            copy[i] = latency == null ? null : new Latency(latency);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Forgets the per-marker latencies, e.g. when a new sequence starts numbering its markers from 0.
+     */
+    public synchronized void clearLatencies() {
+        latencies.clear();
+    }
+}
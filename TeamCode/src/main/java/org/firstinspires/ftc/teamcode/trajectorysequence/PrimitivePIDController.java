@@ -0,0 +1,100 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import com.acmerobotics.roadrunner.control.PIDCoefficients;
+import com.acmerobotics.roadrunner.util.NanoClock;
+
+/**
+ * The PID part of Road Runner's PIDFController, on primitives. PIDFController takes its measured
+ * velocity as a boxed Double and calls its feedforward lambda with boxed arguments on every update, so
+ * it allocates each tick even when no feedforward is set. This one has no feedforward terms and no
+ * output bounds, but its input bounds, first update and integral/derivative terms match PIDFController.
+ */
+class PrimitivePIDController {
+    private final PIDCoefficients pid;
+    private final NanoClock clock;
+
+    private boolean inputBounded;
+    private double minInput;
+    private double maxInput;
+
+    private double targetPosition;
+    private double targetVelocity;
+
+    private double errorSum;
+    private double lastError;
+    private double lastUpdateTimestamp = Double.NaN;
+
+    PrimitivePIDController(PIDCoefficients pid, NanoClock clock) {
+        this.pid = pid;
+        this.clock = clock;
+    }
+
+    void setInputBounds(double min, double max) {
+        if (min < max) {
+            inputBounded = true;
+            minInput = min;
+            maxInput = max;
+        }
+    }
+
+    void setTargetPosition(double targetPosition) {
+        this.targetPosition = targetPosition;
+    }
+
+    void setTargetVelocity(double targetVelocity) {
+        this.targetVelocity = targetVelocity;
+    }
+
+    double getLastError() {
+        return lastError;
+    }
+
+    void reset() {
+        errorSum = 0;
+        lastError = 0;
+        lastUpdateTimestamp = Double.NaN;
+    }
+
+    double update(double measuredPosition) {
+        return update(measuredPosition, Double.NaN);
+    }
+
+    /**
+     * Pass NaN for {@code measuredVelocity} where PIDFController would be passed null; the derivative
+     * term then uses the change in error instead.
+     */
+    double update(double measuredPosition, double measuredVelocity) {
+        double currentTimestamp = clock.seconds();
+        double error = getPositionError(measuredPosition);
+
+        if (Double.isNaN(lastUpdateTimestamp)) {
+            lastError = error;
+            lastUpdateTimestamp = currentTimestamp;
+            return 0.0;
+        }
+
+        double dt = currentTimestamp - lastUpdateTimestamp;
+        errorSum += 0.5 * (error + lastError) * dt;
+        double errorDeriv = (error - lastError) / dt;
+
+        lastError = error;
+        lastUpdateTimestamp = currentTimestamp;
+
+        double derivative = Double.isNaN(measuredVelocity) ? errorDeriv : targetVelocity - measuredVelocity;
+
+        return pid.kP * error + pid.kI * errorSum + pid.kD * derivative;
+    }
+
+    private double getPositionError(double measuredPosition) {
+        double error = targetPosition - measuredPosition;
+
+        if (inputBounded) {
+            double inputRange = maxInput - minInput;
+            while (Math.abs(error) > inputRange / 2.0) {
+                error -= Math.signum(error) * inputRange;
+            }
+        }
+
+        return error;
+    }
+}
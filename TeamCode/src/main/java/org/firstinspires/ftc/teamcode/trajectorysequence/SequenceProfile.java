@@ -0,0 +1,202 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.SequenceSegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TrajectorySegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TurnSegment;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * How one run of a trajectory sequence went, segment by segment: planned and actual duration, number
+ * of control ticks, tick time statistics and the peak tracking error.
+ *
+ * Everything is allocated when the sequence starts, so recording a tick is a handful of array writes.
+ * Tick times go into a fixed histogram of {@link #BUCKET_WIDTH} wide buckets, which bounds the p99 to
+ * within one bucket without keeping every sample.
+ */
+public class SequenceProfile {
+    private static final double BUCKET_WIDTH = 0.0005; // s
+    private static final int BUCKETS = 200; // the last bucket collects everything over 100 ms
+
+    private final SequenceSegment[] segments;
+
+    private final double[] actualDurations;
+    private final int[] ticks;
+    private final double[] minTickTimes;
+    private final double[] maxTickTimes;
+    private final double[] totalTickTimes;
+    private final int[] tickHistogram;
+    private final double[] peakErrors;
+    private final double[] peakHeadingErrors;
+
+    // false if another sequence was started before this one reached its end
+    private boolean complete = true;
+
+    SequenceProfile(TrajectorySequence sequence) {
+        int count = sequence.size();
+
+        segments = new SequenceSegment[count];
+        for (int i = 0; i < count; i++) segments[i] = sequence.get(i);
+
+        actualDurations = new double[count];
+        ticks = new int[count];
+        minTickTimes = new double[count];
+        maxTickTimes = new double[count];
+        totalTickTimes = new double[count];
+        tickHistogram = new int[count * BUCKETS];
+        peakErrors = new double[count];
+        peakHeadingErrors = new double[count];
+
+        Arrays.fill(minTickTimes, Double.POSITIVE_INFINITY);
+    }
+
+    void recordTick(int segment, double tickTime, double errorX, double errorY, double errorHeading) {
+        ticks[segment]++;
+        minTickTimes[segment] = Math.min(minTickTimes[segment], tickTime);
+        maxTickTimes[segment] = Math.max(maxTickTimes[segment], tickTime);
+        totalTickTimes[segment] += tickTime;
+        tickHistogram[segment * BUCKETS + Math.min((int) (tickTime / BUCKET_WIDTH), BUCKETS - 1)]++;
+
+        peakErrors[segment] = Math.max(peakErrors[segment], Math.hypot(errorX, errorY));
+        peakHeadingErrors[segment] = Math.max(peakHeadingErrors[segment], Math.abs(errorHeading));
+    }
+
+    void recordDuration(int segment, double duration) {
+        actualDurations[segment] = duration;
+    }
+
+    void markIncomplete() {
+        complete = false;
+    }
+
+    /**
+     * Whether the sequence ran to its end; segments an interrupted run never reached have no ticks.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int size() {
+        return segments.length;
+    }
+
+    public double getPlannedDuration(int segment) {
+        return segments[segment].getDuration();
+    }
+
+    public double getActualDuration(int segment) {
+        return actualDurations[segment];
+    }
+
+    public int getTicks(int segment) {
+        return ticks[segment];
+    }
+
+    public double getMinTickTime(int segment) {
+        return ticks[segment] == 0 ? 0.0 : minTickTimes[segment];
+    }
+
+    public double getMeanTickTime(int segment) {
+        return ticks[segment] == 0 ? 0.0 : totalTickTimes[segment] / ticks[segment];
+    }
+
+    /**
+     * Upper edge of the histogram bucket holding the 99th percentile tick, capped at the slowest tick.
+     */
+    public double getP99TickTime(int segment) {
+        int count = ticks[segment];
+        if (count == 0) return 0.0;
+
+        int rank = (int) Math.ceil(0.99 * count);
+        int seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += tickHistogram[segment * BUCKETS + bucket];
+            if (seen >= rank) return Math.min((bucket + 1) * BUCKET_WIDTH, maxTickTimes[segment]);
+        }
+
+        return maxTickTimes[segment];
+    }
+
+    public double getPeakError(int segment) {
+        return peakErrors[segment];
+    }
+
+    public double getPeakHeadingError(int segment) {
+        return peakHeadingErrors[segment];
+    }
+
+    public double getPlannedDuration() {
+        double total = 0;
+        for (int i = 0; i < segments.length; i++) total += getPlannedDuration(i);
+        return total;
+    }
+
+    public double getActualDuration() {
+        double total = 0;
+        for (double duration : actualDurations) total += duration;
+        return total;
+    }
+
+    /**
+     * Index of the segment that overran its plan the most, or -1 for an empty sequence.
+     */
+    public int getSlowestSegment() {
+        int slowest = -1;
+        double worstOverrun = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < segments.length; i++) {
+            double overrun = actualDurations[i] - getPlannedDuration(i);
+            if (overrun > worstOverrun) {
+                slowest = i;
+                worstOverrun = overrun;
+            }
+        }
+
+        return slowest;
+    }
+
+    /**
+     * Worst p99 tick time over all segments.
+     */
+    public double getP99TickTime() {
+        double worst = 0;
+        for (int i = 0; i < segments.length; i++) worst = Math.max(worst, getP99TickTime(i));
+        return worst;
+    }
+
+    public String summary() {
+        int slowest = getSlowestSegment();
+        if (slowest == -1) return "empty sequence";
+
+        return String.format(Locale.US,
+                "%s%.2f s planned, %.2f s actual; segment %d (%s) %+.2f s; p99 tick %.1f ms",
+                complete ? "" : "interrupted; ", getPlannedDuration(), getActualDuration(),
+                slowest, kind(segments[slowest]), actualDurations[slowest] - getPlannedDuration(slowest),
+                getP99TickTime() * 1000);
+    }
+
+    void writeCsv(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("segment,type,planned_s,actual_s,ticks,min_tick_ms,mean_tick_ms,p99_tick_ms,peak_error_in,peak_heading_error_deg");
+
+            for (int i = 0; i < segments.length; i++) {
+                writer.println(String.format(Locale.US, "%d,%s,%.4f,%.4f,%d,%.3f,%.3f,%.3f,%.3f,%.3f",
+                        i, kind(segments[i]), getPlannedDuration(i), actualDurations[i], ticks[i],
+                        getMinTickTime(i) * 1000, getMeanTickTime(i) * 1000, getP99TickTime(i) * 1000,
+                        peakErrors[i], Math.toDegrees(peakHeadingErrors[i])));
+            }
+
+            if (writer.checkError()) throw new IOException("Failed to write " + file);
+        }
+    }
+
+    private static String kind(SequenceSegment segment) {
+        if (segment instanceof TrajectorySegment) return "trajectory";
+        if (segment instanceof TurnSegment) return "turn";
+        return "wait";
+    }
+}
@@ -0,0 +1,125 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.geometry.Vector2d;
+import com.acmerobotics.roadrunner.path.Path;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.SequenceSegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TrajectorySegment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the point along a sequence's trajectories closest to a given field point.
+ *
+ * Each path is sampled every {@link #SAMPLE_SPACING} inches of arc length and wrapped in a bounding box.
+ * A query skips every path whose box is farther away than the best sample found so far, scans the
+ * remaining samples, and then hands the winning displacement to {@link Path#project} as its starting
+ * guess, so Newton's method only has to polish an answer that is already within half a sample.
+ */
+public class SpatialIndex {
+    public static final double SAMPLE_SPACING = 0.5; // in
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private static class Entry {
+        final Path path;
+        final double startDisplacement;
+
+        final double[] x;
+        final double[] y;
+        final double[] s;
+
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+
+        Entry(Path path, double startDisplacement) {
+            this.path = path;
+            this.startDisplacement = startDisplacement;
+
+            double length = path.length();
+            int samples = Math.max((int) Math.ceil(length / SAMPLE_SPACING), 1) + 1;
+
+            x = new double[samples];
+            y = new double[samples];
+            s = new double[samples];
+
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < samples; i++) {
+                s[i] = length * i / (samples - 1);
+
+                Pose2d pose = path.get(s[i]);
+                x[i] = pose.getX();
+                y[i] = pose.getY();
+
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxX = Math.max(maxX, x[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        double boxDistanceSquared(double px, double py) {
+            double dx = Math.max(Math.max(minX - px, px - maxX), 0.0);
+            double dy = Math.max(Math.max(minY - py, py - maxY), 0.0);
+            return dx * dx + dy * dy;
+        }
+    }
+
+    public SpatialIndex(List<SequenceSegment> segments) {
+        double displacement = 0;
+
+        for (SequenceSegment segment : segments) {
+            if (segment instanceof TrajectorySegment) {
+                Path path = ((TrajectorySegment) segment).getTrajectory().getPath();
+
+                entries.add(new Entry(path, displacement));
+                displacement += path.length();
+            }
+        }
+    }
+
+    /**
+     * Displacement along the sequence of the point on its trajectories closest to the given point, or 0
+     * if the sequence has no trajectories. Where paths are equally close, the earliest one wins.
+     */
+    public double project(Vector2d point) {
+        double px = point.getX();
+        double py = point.getY();
+
+        Entry bestEntry = null;
+        int bestSample = 0;
+        double bestDistanceSquared = Double.POSITIVE_INFINITY;
+
+        for (Entry entry : entries) {
+            // samples sit at most half a spacing from the true closest point, so only prune beyond that
+            double slack = SAMPLE_SPACING / 2 + Math.sqrt(bestDistanceSquared);
+            if (entry.boxDistanceSquared(px, py) > slack * slack) continue;
+
+            for (int i = 0; i < entry.x.length; i++) {
+                double dx = entry.x[i] - px;
+                double dy = entry.y[i] - py;
+                double distanceSquared = dx * dx + dy * dy;
+
+                if (distanceSquared < bestDistanceSquared) {
+                    bestEntry = entry;
+                    bestSample = i;
+                    bestDistanceSquared = distanceSquared;
+                }
+            }
+        }
+
+        if (bestEntry == null) return 0.0;
+
+        return bestEntry.startDisplacement + bestEntry.path.project(point, bestEntry.s[bestSample]);
+    }
+}
@@ -0,0 +1,283 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.acmerobotics.roadrunner.control.PIDCoefficients;
+import com.acmerobotics.roadrunner.drive.DriveSignal;
+import com.acmerobotics.roadrunner.followers.TrajectoryFollower;
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+import com.acmerobotics.roadrunner.util.Angle;
+import com.acmerobotics.roadrunner.util.NanoClock;
+
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.ACCEL_HEADING;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.ACCEL_X;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.ACCEL_Y;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.HEADING;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.STATE_SIZE;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.VEL_HEADING;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.VEL_X;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.VEL_Y;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.X;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable.Y;
+
+/**
+ * Same control law as Road Runner's HolonomicPIDVAFollower, but reads its targets from a precompiled
+ * {@link TrajectoryTable} when one is supplied and does the frame conversions on primitives. Trajectories
+ * followed without a table are evaluated analytically, exactly like the stock follower.
+ *
+ * {@link #update(Pose2d, Pose2d, double[])} is the allocation-free form of {@code update()}: it writes the
+ * drive signal into a caller-owned array and keeps the error as primitives until {@link #getLastError}
+ * asks for a Pose2d. TrajectoryFollower.update() allocates the trajectory's end pose and its error on
+ * every call and keeps its end-of-trajectory state private, so the array form tracks its own; after
+ * using it, check {@link #isFinished} instead of {@code isFollowing()}.
+ */
+public class TabulatedHolonomicPIDVAFollower extends TrajectoryFollower {
+    // layout of the drive signal arrays written by update(Pose2d, Pose2d, double[])
+    public static final int SIGNAL_VEL_X = 0;
+    public static final int SIGNAL_VEL_Y = 1;
+    public static final int SIGNAL_VEL_HEADING = 2;
+    public static final int SIGNAL_ACCEL_X = 3;
+    public static final int SIGNAL_ACCEL_Y = 4;
+    public static final int SIGNAL_ACCEL_HEADING = 5;
+    public static final int SIGNAL_SIZE = 6;
+
+    private final PrimitivePIDController axialController;
+    private final PrimitivePIDController lateralController;
+    private final PrimitivePIDController headingController;
+
+    private final Pose2d admissibleError;
+    private final double timeout;
+
+    // the last error as primitives; lastError boxes it and is dropped whenever it changes
+    private double lastErrorX;
+    private double lastErrorY;
+    private double lastErrorHeading;
+    private @Nullable Pose2d lastError = new Pose2d();
+
+    // end-of-trajectory state for update(Pose2d, Pose2d, double[]), cached when the trajectory starts
+    private double endX;
+    private double endY;
+    private double endHeading;
+    private double duration;
+    private boolean admissible;
+    private boolean finished;
+
+    private @Nullable TrajectoryTable table;
+    private Trajectory currentTrajectory;
+
+    private final double[] target = new double[STATE_SIZE];
+
+    public TabulatedHolonomicPIDVAFollower(
+            PIDCoefficients axialCoeffs, PIDCoefficients lateralCoeffs, PIDCoefficients headingCoeffs,
+            Pose2d admissibleError, double timeout, NanoClock clock
+    ) {
+        super(admissibleError, timeout, clock);
+
+        this.admissibleError = admissibleError;
+        this.timeout = timeout;
+
+        axialController = new PrimitivePIDController(axialCoeffs, clock);
+        lateralController = new PrimitivePIDController(lateralCoeffs, clock);
+        headingController = new PrimitivePIDController(headingCoeffs, clock);
+
+        headingController.setInputBounds(-Math.PI, Math.PI);
+    }
+
+    public TabulatedHolonomicPIDVAFollower(
+            PIDCoefficients axialCoeffs, PIDCoefficients lateralCoeffs, PIDCoefficients headingCoeffs,
+            Pose2d admissibleError, double timeout
+    ) {
+        this(axialCoeffs, lateralCoeffs, headingCoeffs, admissibleError, timeout, NanoClock.system());
+    }
+
+    @Override
+    public void followTrajectory(@NonNull Trajectory trajectory) {
+        followTrajectory(trajectory, null);
+    }
+
+    /**
+     * Follows a trajectory using the given table for its targets, or analytically if the table is null.
+     */
+    public void followTrajectory(@NonNull Trajectory trajectory, @Nullable TrajectoryTable table) {
+        axialController.reset();
+        lateralController.reset();
+        headingController.reset();
+
+        this.table = table;
+        this.currentTrajectory = trajectory;
+
+        Pose2d end = trajectory.end();
+        endX = end.getX();
+        endY = end.getY();
+        endHeading = end.getHeading();
+        duration = trajectory.duration();
+        admissible = false;
+        finished = false;
+
+        super.followTrajectory(trajectory);
+    }
+
+    /**
+     * Same as {@code update(currentPose, currentRobotVel)}, but writes the drive signal into
+     * {@code signal} (see the SIGNAL_ constants) instead of allocating a DriveSignal.
+     */
+    public void update(@NonNull Pose2d currentPose, @Nullable Pose2d currentRobotVel, double[] signal) {
+        // TrajectoryFollower.update(): stop once the end is reached, or once the timeout runs out
+        double currentHeading = currentPose.getHeading();
+        double currentSin = Math.sin(currentHeading);
+        double currentCos = Math.cos(currentHeading);
+        double fieldErrorX = endX - currentPose.getX();
+        double fieldErrorY = endY - currentPose.getY();
+        double endErrorX = fieldErrorX * currentCos + fieldErrorY * currentSin;
+        double endErrorY = -fieldErrorX * currentSin + fieldErrorY * currentCos;
+        double endErrorHeading = Angle.normDelta(endHeading - currentHeading);
+
+        if (!admissible) {
+            admissible = Math.abs(endErrorX) < admissibleError.getX()
+                    && Math.abs(endErrorY) < admissibleError.getY()
+                    && Math.abs(endErrorHeading) < admissibleError.getHeading();
+        }
+
+        double timeRemaining = duration - elapsedTime();
+        if (timeRemaining < 0.0 && (admissible || timeRemaining < -timeout)) {
+            finished = true;
+
+            for (int i = 0; i < SIGNAL_SIZE; i++) {
+                signal[i] = 0.0;
+            }
+            return;
+        }
+
+        computeSignal(currentPose, currentRobotVel, signal);
+    }
+
+    /**
+     * Whether {@link #update(Pose2d, Pose2d, double[])} has made its final update for this trajectory.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private void evaluateTarget(double t) {
+        if (table != null) {
+            table.get(t, target);
+            return;
+        }
+
+        Pose2d pose = currentTrajectory.get(t);
+        Pose2d vel = currentTrajectory.velocity(t);
+        Pose2d accel = currentTrajectory.acceleration(t);
+
+        target[X] = pose.getX();
+        target[Y] = pose.getY();
+        target[HEADING] = pose.getHeading();
+        target[VEL_X] = vel.getX();
+        target[VEL_Y] = vel.getY();
+        target[VEL_HEADING] = vel.getHeading();
+        target[ACCEL_X] = accel.getX();
+        target[ACCEL_Y] = accel.getY();
+        target[ACCEL_HEADING] = accel.getHeading();
+    }
+
+    @NonNull
+    @Override
+    protected DriveSignal internalUpdate(@NonNull Pose2d currentPose, @Nullable Pose2d currentRobotVel) {
+        double[] signal = new double[SIGNAL_SIZE];
+        computeSignal(currentPose, currentRobotVel, signal);
+
+        return new DriveSignal(
+                new Pose2d(signal[SIGNAL_VEL_X], signal[SIGNAL_VEL_Y], signal[SIGNAL_VEL_HEADING]),
+                new Pose2d(signal[SIGNAL_ACCEL_X], signal[SIGNAL_ACCEL_Y], signal[SIGNAL_ACCEL_HEADING])
+        );
+    }
+
+    private void computeSignal(Pose2d currentPose, @Nullable Pose2d currentRobotVel, double[] signal) {
+        evaluateTarget(elapsedTime());
+
+        double heading = target[HEADING];
+        double sin = Math.sin(heading);
+        double cos = Math.cos(heading);
+
+        double velX = target[VEL_X];
+        double velY = target[VEL_Y];
+        double omega = target[VEL_HEADING];
+
+        // Kinematics.fieldToRobotVelocity()
+        double robotVelX = velX * cos + velY * sin;
+        double robotVelY = -velX * sin + velY * cos;
+
+        // Kinematics.fieldToRobotAcceleration()
+        double accelX = target[ACCEL_X];
+        double accelY = target[ACCEL_Y];
+        double robotAccelX = accelX * cos + accelY * sin + (-velX * sin + velY * cos) * omega;
+        double robotAccelY = -accelX * sin + accelY * cos + (-velX * cos - velY * sin) * omega;
+
+        // Kinematics.calculateRobotPoseError()
+        double currentHeading = currentPose.getHeading();
+        double currentSin = Math.sin(currentHeading);
+        double currentCos = Math.cos(currentHeading);
+        double fieldErrorX = target[X] - currentPose.getX();
+        double fieldErrorY = target[Y] - currentPose.getY();
+        double errorX = fieldErrorX * currentCos + fieldErrorY * currentSin;
+        double errorY = -fieldErrorX * currentSin + fieldErrorY * currentCos;
+        double errorHeading = Angle.normDelta(heading - currentHeading);
+
+        // you can pass the error directly to the controllers by setting setpoint = error and measurement = 0
+        axialController.setTargetPosition(errorX);
+        lateralController.setTargetPosition(errorY);
+        headingController.setTargetPosition(errorHeading);
+
+        axialController.setTargetVelocity(robotVelX);
+        lateralController.setTargetVelocity(robotVelY);
+        headingController.setTargetVelocity(omega);
+
+        // note: feedforward is processed at the wheel level
+        double axialCorrection = axialController.update(0.0, currentRobotVel == null ? Double.NaN : currentRobotVel.getX());
+        double lateralCorrection = lateralController.update(0.0, currentRobotVel == null ? Double.NaN : currentRobotVel.getY());
+        double headingCorrection = headingController.update(0.0, currentRobotVel == null ? Double.NaN : currentRobotVel.getHeading());
+
+        lastErrorX = errorX;
+        lastErrorY = errorY;
+        lastErrorHeading = errorHeading;
+        lastError = null;
+
+        signal[SIGNAL_VEL_X] = robotVelX + axialCorrection;
+        signal[SIGNAL_VEL_Y] = robotVelY + lateralCorrection;
+        signal[SIGNAL_VEL_HEADING] = omega + headingCorrection;
+        signal[SIGNAL_ACCEL_X] = robotAccelX;
+        signal[SIGNAL_ACCEL_Y] = robotAccelY;
+        signal[SIGNAL_ACCEL_HEADING] = target[ACCEL_HEADING];
+    }
+
+    @NonNull
+    @Override
+    public Pose2d getLastError() {
+        if (lastError == null) {
+            lastError = new Pose2d(lastErrorX, lastErrorY, lastErrorHeading);
+        }
+
+        return lastError;
+    }
+
+    @Override
+    public void setLastError(@NonNull Pose2d lastError) {
+        lastErrorX = lastError.getX();
+        lastErrorY = lastError.getY();
+        lastErrorHeading = lastError.getHeading();
+        this.lastError = lastError;
+    }
+
+    public double getLastErrorX() {
+        return lastErrorX;
+    }
+
+    public double getLastErrorY() {
+        return lastErrorY;
+    }
+
+    public double getLastErrorHeading() {
+        return lastErrorHeading;
+    }
+}
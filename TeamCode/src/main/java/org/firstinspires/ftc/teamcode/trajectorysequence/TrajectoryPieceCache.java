@@ -0,0 +1,199 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+import com.acmerobotics.roadrunner.trajectory.TrajectoryBuilder;
+import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryAccelerationConstraint;
+import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryVelocityConstraint;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Process-wide cache of generated trajectories, keyed by everything that goes into a
+ * {@link TrajectoryBuilder}: the start pose and tangent, the base constraints and each path call with
+ * its arguments and constraints. Routes that share a leg, or one route built twice, reuse the
+ * generated trajectory instead of fitting the splines and planning the profile again.
+ *
+ * Constraint objects are compared by identity since they don't implement equality; that's enough for
+ * the drive's shared constraints, while one-off constraints simply never hit. Cached trajectories carry
+ * no markers, and Road Runner trajectories are immutable, so sharing them between sequences is safe.
+ */
+public class TrajectoryPieceCache {
+    private static final int CAPACITY = 1024;
+
+    // access-ordered, so the least recently used piece is evicted first
+    private static final Map<Key, Trajectory> CACHE = new LinkedHashMap<Key, Trajectory>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Trajectory> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    interface PathCallback {
+        void run(TrajectoryBuilder builder);
+    }
+
+    private TrajectoryPieceCache() {
+    }
+
+    static synchronized Trajectory get(Key key) {
+        return CACHE.get(key);
+    }
+
+    static synchronized void put(Key key, Trajectory trajectory) {
+        CACHE.put(key, trajectory);
+    }
+
+    /**
+     * Drops every cached trajectory, e.g. so a benchmark measures path generation instead of cache hits.
+     */
+    public static synchronized void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Where a path starts and the constraints its TrajectoryBuilder is created with.
+     */
+    static final class Start {
+        final Pose2d pose;
+        final double tangent;
+        final TrajectoryVelocityConstraint velConstraint;
+        final TrajectoryAccelerationConstraint accelConstraint;
+        final double resolution;
+
+        Start(
+                Pose2d pose, double tangent,
+                TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint,
+                double resolution
+        ) {
+            this.pose = pose;
+            this.tangent = tangent;
+            this.velConstraint = velConstraint;
+            this.accelConstraint = accelConstraint;
+            this.resolution = resolution;
+        }
+
+        TrajectoryBuilder newBuilder() {
+            return new TrajectoryBuilder(pose, tangent, velConstraint, accelConstraint, resolution);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Start)) return false;
+
+            Start other = (Start) o;
+            return pose.equals(other.pose)
+                    && Double.compare(tangent, other.tangent) == 0
+                    && velConstraint == other.velConstraint
+                    && accelConstraint == other.accelConstraint
+                    && Double.compare(resolution, other.resolution) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pose, tangent, System.identityHashCode(velConstraint), System.identityHashCode(accelConstraint), resolution);
+        }
+    }
+
+    /**
+     * One path call on a TrajectoryBuilder. The callback replays it and isn't part of the identity.
+     */
+    static final class Op {
+        final String name;
+        final double[] values;
+        final TrajectoryVelocityConstraint velConstraint;
+        final TrajectoryAccelerationConstraint accelConstraint;
+        final PathCallback callback;
+
+        Op(
+                String name, double[] values,
+                TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint,
+                PathCallback callback
+        ) {
+            this.name = name;
+            this.values = values;
+            this.velConstraint = velConstraint;
+            this.accelConstraint = accelConstraint;
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Op)) return false;
+
+            Op other = (Op) o;
+            return name.equals(other.name)
+                    && Arrays.equals(values, other.values)
+                    && velConstraint == other.velConstraint
+                    && accelConstraint == other.accelConstraint;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, Arrays.hashCode(values), System.identityHashCode(velConstraint), System.identityHashCode(accelConstraint));
+        }
+    }
+
+    /**
+     * A path so far: where it starts and every call made on it. Keys form a chain, each one extending the
+     * key of the path one call shorter, so growing a path by a call is O(1) instead of copying its calls.
+     */
+    static final class Key {
+        private final Start start;
+        private final Key parent; // null for a path with no calls yet
+        private final Op op;
+        private final int length;
+        private final int hashCode;
+
+        Key(Start start) {
+            this.start = start;
+            this.parent = null;
+            this.op = null;
+            this.length = 0;
+            this.hashCode = start.hashCode();
+        }
+
+        private Key(Key parent, Op op) {
+            this.start = parent.start;
+            this.parent = parent;
+            this.op = op;
+            this.length = parent.length + 1;
+            this.hashCode = 31 * parent.hashCode + op.hashCode();
+        }
+
+        Key extend(Op op) {
+            return new Key(this, op);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = this;
+            Key other = (Key) o;
+            if (key.hashCode != other.hashCode || key.length != other.length) return false;
+
+            // walk back until the chains meet; a path and the cached key it was extended from share theirs
+            while (key != other) {
+                if (key.parent == null) return key.start.equals(other.start);
+                if (!key.op.equals(other.op)) return false;
+
+                key = key.parent;
+                other = other.parent;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
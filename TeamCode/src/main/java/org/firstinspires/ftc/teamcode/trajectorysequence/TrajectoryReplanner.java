@@ -0,0 +1,188 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import androidx.annotation.Nullable;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.geometry.Vector2d;
+import com.acmerobotics.roadrunner.path.Path;
+import com.acmerobotics.roadrunner.path.PathBuilder;
+import com.acmerobotics.roadrunner.profile.MotionState;
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+import com.acmerobotics.roadrunner.trajectory.TrajectoryGenerator;
+import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryAccelerationConstraint;
+import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryVelocityConstraint;
+import com.acmerobotics.roadrunner.util.NanoClock;
+
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Regenerates the rest of a trajectory from the measured pose on a worker thread, for when the robot
+ * has been knocked off its path. The control loop keeps following the old trajectory until a new one is
+ * handed over by {@link #poll}.
+ *
+ * A plan is rooted at the pose measured when it was requested, but the robot keeps moving along the old
+ * trajectory until the plan is swapped in, so the new trajectory starts off by however far the robot
+ * travelled in between; the follower corrects that like any other error. The budget bounds it: the
+ * worker checks the clock between building the trajectory and sampling its table, and abandons any plan
+ * that is over budget, which caps the swap at one budget (plus one loop tick) after the request. After
+ * an abandoned or failed plan no new one is started until the backoff has passed, so a robot that can't
+ * be replanned in time doesn't keep the worker busy with plans that will all be thrown away.
+ *
+ * Replanned trajectories head for the original end pose and end tangent. Their profile starts at the
+ * robot's measured speed along the new path (capped by the velocity constraint), so swapping a plan in
+ * mid-segment doesn't drop the feedforward to zero and brake the robot.
+ */
+class TrajectoryReplanner {
+    // below this the spline to the end pose degenerates; the follower's own correction takes over
+    private static final double MIN_REPLAN_DISTANCE = 2.0; // in
+    private static final double MIN_TANGENT_SPEED = 1.0; // in/s
+
+    private static final double RESOLUTION = 0.25; // in
+
+    static final class Plan {
+        final Object owner;
+        final Trajectory trajectory;
+        final TrajectoryTable table;
+
+        Plan(Object owner, Trajectory trajectory, TrajectoryTable table) {
+            this.owner = owner;
+            this.trajectory = trajectory;
+            this.table = table;
+        }
+    }
+
+    private final TrajectoryVelocityConstraint velConstraint;
+    private final TrajectoryAccelerationConstraint accelConstraint;
+    private final NanoClock clock;
+
+    private final Executor executor;
+
+    private final AtomicBoolean planning = new AtomicBoolean();
+    private final AtomicReference<Plan> finishedPlan = new AtomicReference<>();
+
+    // no new plans before this time; only the worker writes it
+    private volatile double retryTime = Double.NEGATIVE_INFINITY;
+    private final AtomicLong discarded = new AtomicLong();
+
+    TrajectoryReplanner(
+            TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint,
+            NanoClock clock, Executor executor
+    ) {
+        this.velConstraint = velConstraint;
+        this.accelConstraint = accelConstraint;
+        this.clock = clock;
+        this.executor = executor;
+    }
+
+    TrajectoryReplanner(
+            TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint,
+            NanoClock clock
+    ) {
+        this(velConstraint, accelConstraint, clock, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TrajectorySequenceReplanner");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Starts planning from the measured pose to the end of {@code trajectory} unless a plan is already
+     * in progress or the backoff after a discarded plan hasn't passed. {@code owner} identifies what the
+     * plan is for, so that a plan finishing after the runner has moved on is never swapped in. A plan
+     * taking longer than {@code budget} seconds is abandoned, and then no plan is started for
+     * {@code backoff} seconds.
+     */
+    void request(
+            Object owner, Trajectory trajectory, Pose2d poseEstimate, Pose2d poseVelocity,
+            double budget, double backoff
+    ) {
+        double requestTime = clock.seconds();
+        if (requestTime < retryTime) return;
+
+        Pose2d end = trajectory.end();
+        if (poseEstimate.vec().distTo(end.vec()) < MIN_REPLAN_DISTANCE) return;
+
+        if (!planning.compareAndSet(false, true)) return;
+
+        executor.execute(() -> {
+            try {
+                Plan plan = plan(owner, trajectory, poseEstimate, poseVelocity, requestTime + budget);
+                if (plan != null) {
+                    finishedPlan.set(plan);
+                } else {
+                    discarded.incrementAndGet();
+                    retryTime = clock.seconds() + backoff;
+                }
+            } finally {
+                planning.set(false);
+            }
+        });
+    }
+
+    /**
+     * Takes the newest finished plan for {@code owner}, if there is one.
+     */
+    @Nullable
+    Plan poll(Object owner) {
+        Plan plan = finishedPlan.getAndSet(null);
+        if (plan == null || plan.owner != owner) return null;
+
+        return plan;
+    }
+
+    /**
+     * Number of plans abandoned for running over budget or rejected by Road Runner.
+     */
+    long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    private @Nullable Plan plan(Object owner, Trajectory trajectory, Pose2d poseEstimate, Pose2d poseVelocity, double deadline) {
+        Path path = trajectory.getPath();
+        Pose2d end = path.end();
+        double endTangent = path.deriv(path.length()).vec().angle();
+
+        // leave along the direction the robot is already moving in, if it's moving
+        Vector2d fieldVelocity = poseVelocity == null
+                ? new Vector2d()
+                : poseVelocity.vec().rotated(poseEstimate.getHeading());
+        double startTangent = fieldVelocity.norm() > MIN_TANGENT_SPEED
+                ? fieldVelocity.angle()
+                : end.vec().minus(poseEstimate.vec()).angle();
+
+        try {
+            Path replannedPath = new PathBuilder(poseEstimate, startTangent)
+                    .splineToSplineHeading(end, endTangent)
+                    .build();
+
+            // keep the speed the robot already has along the new path instead of starting from rest
+            double startSpeed = Math.max(0.0, fieldVelocity.dot(new Vector2d(Math.cos(startTangent), Math.sin(startTangent))));
+            startSpeed = Math.min(startSpeed, velConstraint.get(
+                    0.0, replannedPath.get(0.0), replannedPath.deriv(0.0), new Pose2d()));
+
+            Trajectory replanned = TrajectoryGenerator.INSTANCE.generateTrajectory(
+                    replannedPath, velConstraint, accelConstraint,
+                    new MotionState(0.0, startSpeed, 0.0, 0.0),
+                    new MotionState(replannedPath.length(), 0.0, 0.0, 0.0),
+                    Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                    RESOLUTION
+            );
+
+            // sampling the table is most of the remaining work, so don't start it once the plan is late
+            if (clock.seconds() > deadline) return null;
+
+            TrajectoryTable table = TrajectoryTable.sample(replanned);
+            if (clock.seconds() > deadline) return null;
+
+            return new Plan(owner, replanned, table);
+        } catch (RuntimeException e) {
+            // Road Runner rejects some geometry (e.g. a loop it can't parametrize); keep the old plan
+            return null;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.util.List;
 
 public class TrajectorySequence {
     private final List<SequenceSegment> sequenceList;
+    private volatile DisplacementTimeIndex displacementTimeIndex;
 
     public TrajectorySequence(List<SequenceSegment> sequenceList) {
         if (sequenceList.size() == 0) throw new EmptySequenceException();
@@ -34,6 +35,19 @@ public class TrajectorySequence {
         return total;
     }
 
+    /**
+     * Index for mapping between time and displacement along this sequence, built on first use.
+     */
+    public DisplacementTimeIndex getDisplacementTimeIndex() {
+        DisplacementTimeIndex index = displacementTimeIndex;
+        if (index == null) {
+            index = new DisplacementTimeIndex(sequenceList);
+            displacementTimeIndex = index;
+        }
+
+        return index;
+    }
+
     public SequenceSegment get(int i) {
         return sequenceList.get(i);
     }
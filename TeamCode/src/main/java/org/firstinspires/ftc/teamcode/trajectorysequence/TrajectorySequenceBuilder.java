@@ -25,10 +25,16 @@ import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TurnSeg
 import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.WaitSegment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TrajectorySequenceBuilder {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     private final double resolution = 0.25;
 
     private final TrajectoryVelocityConstraint baseVelConstraint;
@@ -56,7 +62,14 @@ public class TrajectorySequenceBuilder {
     private boolean setAbsoluteTangent;
     private double absoluteTangent;
 
+    // the path being built is kept as a list of calls; a TrajectoryBuilder is only created, and the calls
+    // replayed into it, when TrajectoryPieceCache doesn't already have the resulting trajectory
+    private TrajectoryPieceCache.Start currentPathStart;
+    private TrajectoryPieceCache.Key currentPathKey;
+    private final List<TrajectoryPieceCache.Op> currentPathOps;
     private TrajectoryBuilder currentTrajectoryBuilder;
+    private int appliedPathOps;
+    private Trajectory currentTrajectory;
 
     private double currentDuration;
     private double currentDisplacement;
@@ -64,6 +77,12 @@ public class TrajectorySequenceBuilder {
     private double lastDurationTraj;
     private double lastDisplacementTraj;
 
+    private double lookupTableResolution;
+
+    private boolean recordOnly;
+    private long inputHash;
+    private final Map<Object, Integer> constraintKeys;
+
     public TrajectorySequenceBuilder(
             Pose2d startPose,
             Double startTangent,
@@ -97,13 +116,31 @@ public class TrajectorySequenceBuilder {
         setAbsoluteTangent = (startTangent != null);
         absoluteTangent = startTangent != null ? startTangent : 0.0;
 
+        currentPathStart = null;
+        currentPathKey = null;
+        currentPathOps = new ArrayList<>();
         currentTrajectoryBuilder = null;
+        appliedPathOps = 0;
+        currentTrajectory = null;
 
         currentDuration = 0.0;
         currentDisplacement = 0.0;
 
         lastDurationTraj = 0.0;
         lastDisplacementTraj = 0.0;
+
+        lookupTableResolution = 0.0;
+
+        recordOnly = false;
+        inputHash = FNV_OFFSET_BASIS;
+        constraintKeys = new IdentityHashMap<>();
+
+        hashInput(
+                "start", startPose.getX(), startPose.getY(), startPose.getHeading(),
+                startTangent != null ? startTangent : Double.NaN,
+                constraintKey(baseVelConstraint), constraintKey(baseAccelConstraint),
+                baseTurnConstraintMaxAngVel, baseTurnConstraintMaxAngAccel
+        );
     }
 
     public TrajectorySequenceBuilder(
@@ -121,7 +158,7 @@ public class TrajectorySequenceBuilder {
     }
 
     public TrajectorySequenceBuilder lineTo(Vector2d endPosition) {
-        return addPath(() -> currentTrajectoryBuilder.lineTo(endPosition, currentVelConstraint, currentAccelConstraint));
+        return lineTo(endPosition, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder lineTo(
@@ -129,11 +166,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.lineTo(endPosition, velConstraint, accelConstraint));
+        return addPath(
+                "lineTo", builder -> builder.lineTo(endPosition, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                endPosition.getX(), endPosition.getY()
+        );
     }
 
     public TrajectorySequenceBuilder lineToConstantHeading(Vector2d endPosition) {
-        return addPath(() -> currentTrajectoryBuilder.lineToConstantHeading(endPosition, currentVelConstraint, currentAccelConstraint));
+        return lineToConstantHeading(endPosition, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder lineToConstantHeading(
@@ -141,11 +182,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.lineToConstantHeading(endPosition, velConstraint, accelConstraint));
+        return addPath(
+                "lineToConstantHeading", builder -> builder.lineToConstantHeading(endPosition, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                endPosition.getX(), endPosition.getY()
+        );
     }
 
     public TrajectorySequenceBuilder lineToLinearHeading(Pose2d endPose) {
-        return addPath(() -> currentTrajectoryBuilder.lineToLinearHeading(endPose, currentVelConstraint, currentAccelConstraint));
+        return lineToLinearHeading(endPose, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder lineToLinearHeading(
@@ -153,11 +198,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.lineToLinearHeading(endPose, velConstraint, accelConstraint));
+        return addPath(
+                "lineToLinearHeading", builder -> builder.lineToLinearHeading(endPose, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                endPose.getX(), endPose.getY(), endPose.getHeading()
+        );
     }
 
     public TrajectorySequenceBuilder lineToSplineHeading(Pose2d endPose) {
-        return addPath(() -> currentTrajectoryBuilder.lineToSplineHeading(endPose, currentVelConstraint, currentAccelConstraint));
+        return lineToSplineHeading(endPose, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder lineToSplineHeading(
@@ -165,11 +214,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.lineToSplineHeading(endPose, velConstraint, accelConstraint));
+        return addPath(
+                "lineToSplineHeading", builder -> builder.lineToSplineHeading(endPose, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                endPose.getX(), endPose.getY(), endPose.getHeading()
+        );
     }
 
     public TrajectorySequenceBuilder strafeTo(Vector2d endPosition) {
-        return addPath(() -> currentTrajectoryBuilder.strafeTo(endPosition, currentVelConstraint, currentAccelConstraint));
+        return strafeTo(endPosition, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder strafeTo(
@@ -177,11 +230,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.strafeTo(endPosition, velConstraint, accelConstraint));
+        return addPath(
+                "strafeTo", builder -> builder.strafeTo(endPosition, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                endPosition.getX(), endPosition.getY()
+        );
     }
 
     public TrajectorySequenceBuilder forward(double distance) {
-        return addPath(() -> currentTrajectoryBuilder.forward(distance, currentVelConstraint, currentAccelConstraint));
+        return forward(distance, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder forward(
@@ -189,11 +246,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.forward(distance, velConstraint, accelConstraint));
+        return addPath(
+                "forward", builder -> builder.forward(distance, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                distance
+        );
     }
 
     public TrajectorySequenceBuilder back(double distance) {
-        return addPath(() -> currentTrajectoryBuilder.back(distance, currentVelConstraint, currentAccelConstraint));
+        return back(distance, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder back(
@@ -201,11 +262,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.back(distance, velConstraint, accelConstraint));
+        return addPath(
+                "back", builder -> builder.back(distance, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                distance
+        );
     }
 
     public TrajectorySequenceBuilder strafeLeft(double distance) {
-        return addPath(() -> currentTrajectoryBuilder.strafeLeft(distance, currentVelConstraint, currentAccelConstraint));
+        return strafeLeft(distance, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder strafeLeft(
@@ -213,11 +278,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.strafeLeft(distance, velConstraint, accelConstraint));
+        return addPath(
+                "strafeLeft", builder -> builder.strafeLeft(distance, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                distance
+        );
     }
 
     public TrajectorySequenceBuilder strafeRight(double distance) {
-        return addPath(() -> currentTrajectoryBuilder.strafeRight(distance, currentVelConstraint, currentAccelConstraint));
+        return strafeRight(distance, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder strafeRight(
@@ -225,11 +294,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.strafeRight(distance, velConstraint, accelConstraint));
+        return addPath(
+                "strafeRight", builder -> builder.strafeRight(distance, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                distance
+        );
     }
 
     public TrajectorySequenceBuilder splineTo(Vector2d endPosition, double endHeading) {
-        return addPath(() -> currentTrajectoryBuilder.splineTo(endPosition, endHeading, currentVelConstraint, currentAccelConstraint));
+        return splineTo(endPosition, endHeading, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder splineTo(
@@ -238,11 +311,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.splineTo(endPosition, endHeading, velConstraint, accelConstraint));
+        return addPath(
+                "splineTo", builder -> builder.splineTo(endPosition, endHeading, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                endPosition.getX(), endPosition.getY(), endHeading
+        );
     }
 
     public TrajectorySequenceBuilder splineToConstantHeading(Vector2d endPosition, double endHeading) {
-        return addPath(() -> currentTrajectoryBuilder.splineToConstantHeading(endPosition, endHeading, currentVelConstraint, currentAccelConstraint));
+        return splineToConstantHeading(endPosition, endHeading, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder splineToConstantHeading(
@@ -251,11 +328,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.splineToConstantHeading(endPosition, endHeading, velConstraint, accelConstraint));
+        return addPath(
+                "splineToConstantHeading", builder -> builder.splineToConstantHeading(endPosition, endHeading, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                endPosition.getX(), endPosition.getY(), endHeading
+        );
     }
 
     public TrajectorySequenceBuilder splineToLinearHeading(Pose2d endPose, double endHeading) {
-        return addPath(() -> currentTrajectoryBuilder.splineToLinearHeading(endPose, endHeading, currentVelConstraint, currentAccelConstraint));
+        return splineToLinearHeading(endPose, endHeading, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder splineToLinearHeading(
@@ -264,11 +345,15 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.splineToLinearHeading(endPose, endHeading, velConstraint, accelConstraint));
+        return addPath(
+                "splineToLinearHeading", builder -> builder.splineToLinearHeading(endPose, endHeading, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                endPose.getX(), endPose.getY(), endPose.getHeading(), endHeading
+        );
     }
 
     public TrajectorySequenceBuilder splineToSplineHeading(Pose2d endPose, double endHeading) {
-        return addPath(() -> currentTrajectoryBuilder.splineToSplineHeading(endPose, endHeading, currentVelConstraint, currentAccelConstraint));
+        return splineToSplineHeading(endPose, endHeading, currentVelConstraint, currentAccelConstraint);
     }
 
     public TrajectorySequenceBuilder splineToSplineHeading(
@@ -277,21 +362,37 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
-        return addPath(() -> currentTrajectoryBuilder.splineToSplineHeading(endPose, endHeading, velConstraint, accelConstraint));
+        return addPath(
+                "splineToSplineHeading", builder -> builder.splineToSplineHeading(endPose, endHeading, velConstraint, accelConstraint),
+                velConstraint, accelConstraint,
+                endPose.getX(), endPose.getY(), endPose.getHeading(), endHeading
+        );
     }
 
-    private TrajectorySequenceBuilder addPath(AddPathCallback callback) {
-        if (currentTrajectoryBuilder == null) newPath();
+    private TrajectorySequenceBuilder addPath(
+            String name, TrajectoryPieceCache.PathCallback callback,
+            TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint,
+            double... values
+    ) {
+        double[] inputs = Arrays.copyOf(values, values.length + 2);
+        inputs[values.length] = constraintKey(velConstraint);
+        inputs[values.length + 1] = constraintKey(accelConstraint);
+        hashInput(name, inputs);
 
+        if (recordOnly) return this;
+
+        TrajectoryPieceCache.Op op = new TrajectoryPieceCache.Op(name, values, velConstraint, accelConstraint, callback);
+
+        if (currentPathStart == null) newPath();
+
+        Trajectory builtTraj;
         try {
-            callback.run();
+            builtTraj = extendPath(op);
         } catch (PathContinuityViolationException e) {
             newPath();
-            callback.run();
+            builtTraj = extendPath(op);
         }
 
-        Trajectory builtTraj = currentTrajectoryBuilder.build();
-
         double durationDifference = builtTraj.duration() - lastDurationTraj;
         double displacementDifference = builtTraj.getPath().length() - lastDisplacementTraj;
 
@@ -305,7 +406,41 @@ public class TrajectorySequenceBuilder {
         return this;
     }
 
+    private Trajectory extendPath(TrajectoryPieceCache.Op op) {
+        currentPathOps.add(op);
+
+        TrajectoryPieceCache.Key key = currentPathKey.extend(op);
+        Trajectory trajectory = TrajectoryPieceCache.get(key);
+
+        if (trajectory == null) {
+            if (currentTrajectoryBuilder == null) {
+                currentTrajectoryBuilder = currentPathStart.newBuilder();
+                appliedPathOps = 0;
+            }
+
+            try {
+                while (appliedPathOps < currentPathOps.size()) {
+                    currentPathOps.get(appliedPathOps).callback.run(currentTrajectoryBuilder);
+                    appliedPathOps++;
+                }
+            } catch (PathContinuityViolationException e) {
+                // the path so far is still intact; the call that broke it moves to a new path
+                currentPathOps.remove(currentPathOps.size() - 1);
+                throw e;
+            }
+
+            trajectory = currentTrajectoryBuilder.build();
+            TrajectoryPieceCache.put(key, trajectory);
+        }
+
+        currentPathKey = key;
+        currentTrajectory = trajectory;
+
+        return trajectory;
+    }
+
     public TrajectorySequenceBuilder setTangent(double tangent) {
+        hashInput("setTangent", tangent);
         setAbsoluteTangent = true;
         absoluteTangent = tangent;
 
@@ -315,6 +450,7 @@ public class TrajectorySequenceBuilder {
     }
 
     private TrajectorySequenceBuilder setTangentOffset(double offset) {
+        hashInput("setTangentOffset", offset);
         setAbsoluteTangent = false;
 
         this.tangentOffset = offset;
@@ -324,6 +460,7 @@ public class TrajectorySequenceBuilder {
     }
 
     public TrajectorySequenceBuilder setReversed(boolean reversed) {
+        hashInput("setReversed", reversed ? 1 : 0);
         return reversed ? this.setTangentOffset(Math.toRadians(180.0)) : this.setTangentOffset(0.0);
     }
 
@@ -331,6 +468,7 @@ public class TrajectorySequenceBuilder {
             TrajectoryVelocityConstraint velConstraint,
             TrajectoryAccelerationConstraint accelConstraint
     ) {
+        hashInput("setConstraints", constraintKey(velConstraint), constraintKey(accelConstraint));
         this.currentVelConstraint = velConstraint;
         this.currentAccelConstraint = accelConstraint;
 
@@ -338,6 +476,7 @@ public class TrajectorySequenceBuilder {
     }
 
     public TrajectorySequenceBuilder resetConstraints() {
+        hashInput("resetConstraints");
         this.currentVelConstraint = this.baseVelConstraint;
         this.currentAccelConstraint = this.baseAccelConstraint;
 
@@ -345,30 +484,35 @@ public class TrajectorySequenceBuilder {
     }
 
     public TrajectorySequenceBuilder setVelConstraint(TrajectoryVelocityConstraint velConstraint) {
+        hashInput("setVelConstraint", constraintKey(velConstraint));
         this.currentVelConstraint = velConstraint;
 
         return this;
     }
 
     public TrajectorySequenceBuilder resetVelConstraint() {
+        hashInput("resetVelConstraint");
         this.currentVelConstraint = this.baseVelConstraint;
 
         return this;
     }
 
     public TrajectorySequenceBuilder setAccelConstraint(TrajectoryAccelerationConstraint accelConstraint) {
+        hashInput("setAccelConstraint", constraintKey(accelConstraint));
         this.currentAccelConstraint = accelConstraint;
 
         return this;
     }
 
     public TrajectorySequenceBuilder resetAccelConstraint() {
+        hashInput("resetAccelConstraint");
         this.currentAccelConstraint = this.baseAccelConstraint;
 
         return this;
     }
 
     public TrajectorySequenceBuilder setTurnConstraint(double maxAngVel, double maxAngAccel) {
+        hashInput("setTurnConstraint", maxAngVel, maxAngAccel);
         this.currentTurnConstraintMaxAngVel = maxAngVel;
         this.currentTurnConstraintMaxAngAccel = maxAngAccel;
 
@@ -376,65 +520,168 @@ public class TrajectorySequenceBuilder {
     }
 
     public TrajectorySequenceBuilder resetTurnConstraint() {
+        hashInput("resetTurnConstraint");
         this.currentTurnConstraintMaxAngVel = baseTurnConstraintMaxAngVel;
         this.currentTurnConstraintMaxAngAccel = baseTurnConstraintMaxAngAccel;
 
         return this;
     }
 
+    /**
+     * Switches the builder to only record its inputs: no trajectories are generated and {@link #build()}
+     * can't be called, but {@link #getMarkerCallbacks()} comes out the same as for a full build. The input
+     * hash does not: markers placed at the current time or displacement hash those, which stay 0 here,
+     * and a live build also hashes its compileLookupTables() call. Only hashes from record-only builders
+     * are comparable with each other, which is how TrajectorySequenceCache writes and checks them.
+     */
+    public TrajectorySequenceBuilder recordOnly() {
+        this.recordOnly = true;
+
+        return this;
+    }
+
+    /**
+     * Mixes values the builder can't see into the input hash, e.g. the numbers behind the base
+     * constraint objects.
+     */
+    public TrajectorySequenceBuilder addCacheKey(double... values) {
+        hashInput("cacheKey", values);
+
+        return this;
+    }
+
+    /**
+     * Hash of every call made on this builder so far, along with its arguments. Marker positions and
+     * constraint objects are covered by call order and identity; custom time and displacement
+     * producers and the values inside constraint objects are not, see {@link #addCacheKey}.
+     */
+    public long getInputHash() {
+        return inputHash;
+    }
+
+    /**
+     * Every marker callback added so far, in the order the built sequence's markers are numbered.
+     */
+    public List<MarkerCallback> getMarkerCallbacks() {
+        List<MarkerCallback> callbacks = new ArrayList<>();
+
+        for (TemporalMarker marker : temporalMarkers) callbacks.add(marker.getCallback());
+        for (DisplacementMarker marker : displacementMarkers) callbacks.add(marker.getCallback());
+        for (SpatialMarker marker : spatialMarkers) callbacks.add(marker.getCallback());
+
+        return callbacks;
+    }
+
+    private void hashInput(String op, double... values) {
+        hashLong(op.hashCode());
+        hashLong(values.length);
+
+        for (double value : values) {
+            hashLong(Double.doubleToLongBits(value));
+        }
+    }
+
+    private void hashLong(long value) {
+        for (int i = 0; i < 8; i++) {
+            inputHash ^= (value >>> (8 * i)) & 0xff;
+            inputHash *= FNV_PRIME;
+        }
+    }
+
+    // constraint objects are opaque, so they're keyed by class and by order of first use within this builder
+    private double constraintKey(Object constraint) {
+        Integer index = constraintKeys.get(constraint);
+        if (index == null) {
+            index = constraintKeys.size();
+            constraintKeys.put(constraint, index);
+        }
+
+        return 31.0 * constraint.getClass().getName().hashCode() + index;
+    }
+
+    /**
+     * Makes {@link #build()} sample every trajectory into a {@link TrajectoryTable} so that
+     * a {@link TabulatedHolonomicPIDVAFollower} can look targets up instead of evaluating the spline.
+     */
+    public TrajectorySequenceBuilder compileLookupTables(double resolution) {
+        hashInput("compileLookupTables", resolution);
+        this.lookupTableResolution = resolution;
+
+        return this;
+    }
+
+    public TrajectorySequenceBuilder compileLookupTables() {
+        return compileLookupTables(TrajectoryTable.DEFAULT_RESOLUTION);
+    }
+
     public TrajectorySequenceBuilder addTemporalMarker(MarkerCallback callback) {
+        hashInput("addTemporalMarker");
         return this.addTemporalMarker(currentDuration, callback);
     }
 
     public TrajectorySequenceBuilder UNSTABLE_addTemporalMarkerOffset(double offset, MarkerCallback callback) {
+        hashInput("UNSTABLE_addTemporalMarkerOffset", offset);
         return this.addTemporalMarker(currentDuration + offset, callback);
     }
 
     public TrajectorySequenceBuilder addTemporalMarker(double time, MarkerCallback callback) {
+        hashInput("addTemporalMarker", time);
         return this.addTemporalMarker(0.0, time, callback);
     }
 
     public TrajectorySequenceBuilder addTemporalMarker(double scale, double offset, MarkerCallback callback) {
+        hashInput("addTemporalMarker", scale, offset);
         return this.addTemporalMarker(time -> scale * time + offset, callback);
     }
 
     public TrajectorySequenceBuilder addTemporalMarker(TimeProducer time, MarkerCallback callback) {
+        hashInput("addTemporalMarker");
         this.temporalMarkers.add(new TemporalMarker(time, callback));
         return this;
     }
 
     public TrajectorySequenceBuilder addSpatialMarker(Vector2d point, MarkerCallback callback) {
+        hashInput("addSpatialMarker", point.getX(), point.getY());
         this.spatialMarkers.add(new SpatialMarker(point, callback));
         return this;
     }
 
     public TrajectorySequenceBuilder addDisplacementMarker(MarkerCallback callback) {
+        hashInput("addDisplacementMarker");
         return this.addDisplacementMarker(currentDisplacement, callback);
     }
 
     public TrajectorySequenceBuilder UNSTABLE_addDisplacementMarkerOffset(double offset, MarkerCallback callback) {
+        hashInput("UNSTABLE_addDisplacementMarkerOffset", offset);
         return this.addDisplacementMarker(currentDisplacement + offset, callback);
     }
 
     public TrajectorySequenceBuilder addDisplacementMarker(double displacement, MarkerCallback callback) {
+        hashInput("addDisplacementMarker", displacement);
         return this.addDisplacementMarker(0.0, displacement, callback);
     }
 
     public TrajectorySequenceBuilder addDisplacementMarker(double scale, double offset, MarkerCallback callback) {
+        hashInput("addDisplacementMarker", scale, offset);
         return addDisplacementMarker((displacement -> scale * displacement + offset), callback);
     }
 
     public TrajectorySequenceBuilder addDisplacementMarker(DisplacementProducer displacement, MarkerCallback callback) {
+        hashInput("addDisplacementMarker");
         displacementMarkers.add(new DisplacementMarker(displacement, callback));
 
         return this;
     }
 
     public TrajectorySequenceBuilder turn(double angle) {
+        hashInput("turn", angle);
         return turn(angle, currentTurnConstraintMaxAngVel, currentTurnConstraintMaxAngAccel);
     }
 
     public TrajectorySequenceBuilder turn(double angle, double maxAngVel, double maxAngAccel) {
+        hashInput("turn", angle, maxAngVel, maxAngAccel);
+        if (recordOnly) return this;
+
         pushPath();
 
         MotionProfile turnProfile = MotionProfileGenerator.generateSimpleMotionProfile(
@@ -457,6 +704,9 @@ public class TrajectorySequenceBuilder {
     }
 
     public TrajectorySequenceBuilder waitSeconds(double seconds) {
+        hashInput("waitSeconds", seconds);
+        if (recordOnly) return this;
+
         pushPath();
         sequenceSegments.add(new WaitSegment(lastPose, seconds, Collections.emptyList()));
 
@@ -465,6 +715,15 @@ public class TrajectorySequenceBuilder {
     }
 
     public TrajectorySequenceBuilder addTrajectory(Trajectory trajectory) {
+        Pose2d start = trajectory.start();
+        Pose2d end = trajectory.end();
+        hashInput(
+                "addTrajectory", trajectory.duration(),
+                start.getX(), start.getY(), start.getHeading(),
+                end.getX(), end.getY(), end.getHeading()
+        );
+        if (recordOnly) return this;
+
         pushPath();
 
         sequenceSegments.add(new TrajectorySegment(trajectory));
@@ -472,16 +731,19 @@ public class TrajectorySequenceBuilder {
     }
 
     private void pushPath() {
-        if (currentTrajectoryBuilder != null) {
-            Trajectory builtTraj = currentTrajectoryBuilder.build();
-            sequenceSegments.add(new TrajectorySegment(builtTraj));
+        if (currentTrajectory != null) {
+            sequenceSegments.add(new TrajectorySegment(currentTrajectory));
         }
 
+        currentPathStart = null;
+        currentPathKey = null;
+        currentPathOps.clear();
         currentTrajectoryBuilder = null;
+        currentTrajectory = null;
     }
 
     private void newPath() {
-        if (currentTrajectoryBuilder != null)
+        if (currentPathStart != null)
             pushPath();
 
         lastDurationTraj = 0.0;
@@ -489,10 +751,15 @@ public class TrajectorySequenceBuilder {
 
         double tangent = setAbsoluteTangent ? absoluteTangent : Angle.norm(lastPose.getHeading() + tangentOffset);
 
-        currentTrajectoryBuilder = new TrajectoryBuilder(lastPose, tangent, currentVelConstraint, currentAccelConstraint, resolution);
+        currentPathStart = new TrajectoryPieceCache.Start(lastPose, tangent, currentVelConstraint, currentAccelConstraint, resolution);
+        currentPathKey = new TrajectoryPieceCache.Key(currentPathStart);
     }
 
     public TrajectorySequence build() {
+        if (recordOnly) {
+            throw new IllegalStateException("A record-only builder has no trajectories to build");
+        }
+
         pushPath();
 
         List<TrajectoryMarker> globalMarkers = convertMarkersToGlobal(
@@ -500,7 +767,29 @@ public class TrajectorySequenceBuilder {
                 temporalMarkers, displacementMarkers, spatialMarkers
         );
 
-        return new TrajectorySequence(projectGlobalMarkersToLocalSegments(globalMarkers, sequenceSegments));
+        List<SequenceSegment> segments = projectGlobalMarkersToLocalSegments(globalMarkers, sequenceSegments);
+
+        if (lookupTableResolution > 0) {
+            segments = compileLookupTables(segments, lookupTableResolution);
+        }
+
+        return new TrajectorySequence(segments);
+    }
+
+    private List<SequenceSegment> compileLookupTables(List<SequenceSegment> sequenceSegments, double resolution) {
+        List<SequenceSegment> compiledSegments = new ArrayList<>(sequenceSegments.size());
+
+        for (SequenceSegment segment : sequenceSegments) {
+            if (segment instanceof TrajectorySegment) {
+                Trajectory trajectory = ((TrajectorySegment) segment).getTrajectory();
+
+                compiledSegments.add(new TrajectorySegment(trajectory, TrajectoryTable.sample(trajectory, resolution)));
+            } else {
+                compiledSegments.add(segment);
+            }
+        }
+
+        return compiledSegments;
     }
 
     private List<TrajectoryMarker> convertMarkersToGlobal(
@@ -511,6 +800,8 @@ public class TrajectorySequenceBuilder {
     ) {
         ArrayList<TrajectoryMarker> trajectoryMarkers = new ArrayList<>();
 
+        DisplacementTimeIndex index = new DisplacementTimeIndex(sequenceSegments);
+
         // Convert temporal markers
         for (TemporalMarker marker : temporalMarkers) {
             trajectoryMarkers.add(
@@ -520,10 +811,7 @@ public class TrajectorySequenceBuilder {
 
         // Convert displacement markers
         for (DisplacementMarker marker : displacementMarkers) {
-            double time = displacementToTime(
-                    sequenceSegments,
-                    marker.getProducer().produce(currentDisplacement)
-            );
+            double time = index.displacementToTime(marker.getProducer().produce(currentDisplacement));
 
             trajectoryMarkers.add(
                     new TrajectoryMarker(
@@ -534,10 +822,11 @@ public class TrajectorySequenceBuilder {
         }
 
         // Convert spatial markers
+        SpatialIndex spatialIndex = spatialMarkers.isEmpty() ? null : new SpatialIndex(sequenceSegments);
         for (SpatialMarker marker : spatialMarkers) {
             trajectoryMarkers.add(
                     new TrajectoryMarker(
-                            pointToTime(sequenceSegments, marker.getPoint()),
+                            index.displacementToTime(spatialIndex.project(marker.getPoint())),
                             marker.getCallback()
                     )
             );
@@ -554,158 +843,63 @@ public class TrajectorySequenceBuilder {
             totalSequenceDuration += segment.getDuration();
         }
 
-        for (TrajectoryMarker marker : markers) {
-            SequenceSegment segment = null;
-            int segmentIndex = 0;
-            double segmentOffsetTime = 0;
-
-            double currentTime = 0;
-            for (int i = 0; i < sequenceSegments.size(); i++) {
-                SequenceSegment seg = sequenceSegments.get(i);
-
-                double markerTime = Math.min(marker.getTime(), totalSequenceDuration);
-
-                if (currentTime + seg.getDuration() >= markerTime) {
-                    segment = seg;
-                    segmentIndex = i;
-                    segmentOffsetTime = markerTime - currentTime;
-
-                    break;
-                } else {
-                    currentTime += seg.getDuration();
-                }
-            }
-
-            SequenceSegment newSegment = null;
-
-            if (segment instanceof WaitSegment) {
-                List<TrajectoryMarker> newMarkers = new ArrayList<>(segment.getMarkers());
-
-                newMarkers.addAll(sequenceSegments.get(segmentIndex).getMarkers());
-                newMarkers.add(new TrajectoryMarker(segmentOffsetTime, marker.getCallback()));
+        // the sort is stable, so markers at the same time keep the order they were added in
+        List<TrajectoryMarker> sortedMarkers = new ArrayList<>(markers);
+        Collections.sort(sortedMarkers, (t1, t2) -> Double.compare(t1.getTime(), t2.getTime()));
 
-                WaitSegment thisSegment = (WaitSegment) segment;
-                newSegment = new WaitSegment(thisSegment.getStartPose(), thisSegment.getDuration(), newMarkers);
-            } else if (segment instanceof TurnSegment) {
-                List<TrajectoryMarker> newMarkers = new ArrayList<>(segment.getMarkers());
+        List<SequenceSegment> projectedSegments = new ArrayList<>(sequenceSegments.size());
+        int markerIndex = 0;
+        double currentTime = 0;
 
-                newMarkers.addAll(sequenceSegments.get(segmentIndex).getMarkers());
-                newMarkers.add(new TrajectoryMarker(segmentOffsetTime, marker.getCallback()));
+        // single merge pass: each marker goes to the first segment ending at or after it, and each
+        // segment is rebuilt at most once with all of its markers
+        for (int i = 0; i < sequenceSegments.size(); i++) {
+            SequenceSegment segment = sequenceSegments.get(i);
+            boolean isLastSegment = i == sequenceSegments.size() - 1;
 
-                TurnSegment thisSegment = (TurnSegment) segment;
-                newSegment = new TurnSegment(thisSegment.getStartPose(), thisSegment.getTotalRotation(), thisSegment.getMotionProfile(), newMarkers);
-            } else if (segment instanceof TrajectorySegment) {
-                TrajectorySegment thisSegment = (TrajectorySegment) segment;
+            List<TrajectoryMarker> segmentMarkers = null;
 
-                List<TrajectoryMarker> newMarkers = new ArrayList<>(thisSegment.getTrajectory().getMarkers());
-                newMarkers.add(new TrajectoryMarker(segmentOffsetTime, marker.getCallback()));
+            while (markerIndex < sortedMarkers.size()) {
+                TrajectoryMarker marker = sortedMarkers.get(markerIndex);
+                double markerTime = Math.min(marker.getTime(), totalSequenceDuration);
 
-                newSegment = new TrajectorySegment(new Trajectory(thisSegment.getTrajectory().getPath(), thisSegment.getTrajectory().getProfile(), newMarkers));
-            }
+                if (!isLastSegment && currentTime + segment.getDuration() < markerTime) break;
 
-            sequenceSegments.set(segmentIndex, newSegment);
-        }
-
-        return sequenceSegments;
-    }
+                if (segmentMarkers == null) segmentMarkers = new ArrayList<>();
+                segmentMarkers.add(new TrajectoryMarker(markerTime - currentTime, marker.getCallback()));
 
-    // Taken from Road Runner's TrajectoryGenerator.displacementToTime() since it's private
-    // note: this assumes that the profile position is monotonic increasing
-    private Double motionProfileDisplacementToTime(MotionProfile profile, double s) {
-        double tLo = 0.0;
-        double tHi = profile.duration();
-        while (!(Math.abs(tLo - tHi) < 1e-6)) {
-            double tMid = 0.5 * (tLo + tHi);
-            if (profile.get(tMid).getX() > s) {
-                tHi = tMid;
-            } else {
-                tLo = tMid;
+                markerIndex++;
             }
-        }
-        return 0.5 * (tLo + tHi);
-    }
 
-    private Double displacementToTime(List<SequenceSegment> sequenceSegments, double s) {
-        double currentTime = 0.0;
-        double currentDisplacement = 0.0;
+            projectedSegments.add(segmentMarkers == null ? segment : addMarkers(segment, segmentMarkers));
 
-        for (SequenceSegment segment : sequenceSegments) {
-            if (segment instanceof TrajectorySegment) {
-                TrajectorySegment thisSegment = (TrajectorySegment) segment;
-
-                double segmentLength = thisSegment.getTrajectory().getPath().length();
-
-                if (currentDisplacement + segmentLength > s) {
-                    double target = s - currentDisplacement;
-                    double timeInSegment = motionProfileDisplacementToTime(
-                            thisSegment.getTrajectory().getProfile(),
-                            target
-                    );
-
-                    return currentTime + timeInSegment;
-                } else {
-                    currentDisplacement += segmentLength;
-                    currentTime += thisSegment.getTrajectory().duration();
-                }
-            } else {
-                currentTime += segment.getDuration();
-            }
+            currentTime += segment.getDuration();
         }
 
-        return 0.0;
+        return projectedSegments;
     }
 
-    private Double pointToTime(List<SequenceSegment> sequenceSegments, Vector2d point) {
-        class ComparingPoints {
-            private final double distanceToPoint;
-            private final double totalDisplacement;
-            private final double thisPathDisplacement;
+    private SequenceSegment addMarkers(SequenceSegment segment, List<TrajectoryMarker> markers) {
+        if (segment instanceof WaitSegment) {
+            List<TrajectoryMarker> newMarkers = new ArrayList<>(segment.getMarkers());
+            newMarkers.addAll(markers);
 
-            public ComparingPoints(double distanceToPoint, double totalDisplacement, double thisPathDisplacement) {
-                this.distanceToPoint = distanceToPoint;
-                this.totalDisplacement = totalDisplacement;
-                this.thisPathDisplacement = thisPathDisplacement;
-            }
-        }
-
-        List<ComparingPoints> projectedPoints = new ArrayList<>();
-
-        for (SequenceSegment segment : sequenceSegments) {
-            if (segment instanceof TrajectorySegment) {
-                TrajectorySegment thisSegment = (TrajectorySegment) segment;
-
-                double displacement = thisSegment.getTrajectory().getPath().project(point, 0.25);
-                Vector2d projectedPoint = thisSegment.getTrajectory().getPath().get(displacement).vec();
-                double distanceToPoint = point.minus(projectedPoint).norm();
-
-                double totalDisplacement = 0.0;
-
-                for (ComparingPoints comparingPoint : projectedPoints) {
-                    totalDisplacement += comparingPoint.totalDisplacement;
-                }
-
-                totalDisplacement += displacement;
-
-                projectedPoints.add(new ComparingPoints(distanceToPoint, displacement, totalDisplacement));
-            }
-        }
+            return new WaitSegment(segment.getStartPose(), segment.getDuration(), newMarkers);
+        } else if (segment instanceof TurnSegment) {
+            List<TrajectoryMarker> newMarkers = new ArrayList<>(segment.getMarkers());
+            newMarkers.addAll(markers);
 
-        ComparingPoints closestPoint = null;
+            TurnSegment thisSegment = (TurnSegment) segment;
+            return new TurnSegment(thisSegment.getStartPose(), thisSegment.getTotalRotation(), thisSegment.getMotionProfile(), newMarkers);
+        } else if (segment instanceof TrajectorySegment) {
+            Trajectory trajectory = ((TrajectorySegment) segment).getTrajectory();
 
-        for (ComparingPoints comparingPoint : projectedPoints) {
-            if (closestPoint == null) {
-                closestPoint = comparingPoint;
-                continue;
-            }
+            List<TrajectoryMarker> newMarkers = new ArrayList<>(trajectory.getMarkers());
+            newMarkers.addAll(markers);
 
-            if (comparingPoint.distanceToPoint < closestPoint.distanceToPoint)
-                closestPoint = comparingPoint;
+            return new TrajectorySegment(new Trajectory(trajectory.getPath(), trajectory.getProfile(), newMarkers));
         }
 
-        return displacementToTime(sequenceSegments, closestPoint.thisPathDisplacement);
-    }
-
-    private interface AddPathCallback {
-        void run();
+        return segment;
     }
 }
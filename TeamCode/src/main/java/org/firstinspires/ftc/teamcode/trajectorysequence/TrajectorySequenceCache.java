@@ -0,0 +1,335 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import androidx.annotation.Nullable;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.path.LineSegment;
+import com.acmerobotics.roadrunner.path.Path;
+import com.acmerobotics.roadrunner.path.PathSegment;
+import com.acmerobotics.roadrunner.path.heading.LinearInterpolator;
+import com.acmerobotics.roadrunner.profile.MotionProfile;
+import com.acmerobotics.roadrunner.profile.MotionSegment;
+import com.acmerobotics.roadrunner.profile.MotionState;
+import com.acmerobotics.roadrunner.trajectory.MarkerCallback;
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+import com.acmerobotics.roadrunner.trajectory.TrajectoryMarker;
+import com.acmerobotics.roadrunner.util.Angle;
+
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.SequenceSegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TrajectorySegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TurnSegment;
+import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.WaitSegment;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Compact binary form of a built {@link TrajectorySequence}, so that a sequence can be loaded at init
+ * instead of regenerating its splines.
+ *
+ * Motion profiles, turns, waits and lookup tables are stored exactly. Paths are stored as a polyline
+ * sampled every {@link #PATH_RESOLUTION} inches with linearly interpolated heading, which is plenty for
+ * drawing and for the follower's end-of-trajectory checks; a {@link TabulatedHolonomicPIDVAFollower}
+ * takes its targets from the stored table, not the path. Marker callbacks can't be serialized, so each
+ * marker stores the index of its callback in {@link TrajectorySequenceBuilder#getMarkerCallbacks()}, and
+ * the file is only accepted when the builder input hash it was written with still matches.
+ */
+public class TrajectorySequenceCache {
+    public static final double PATH_RESOLUTION = 0.25; // in
+
+    private static final int MAGIC = 0x54535143; // "TSQC"
+    private static final int VERSION = 1;
+
+    private static final byte TRAJECTORY_SEGMENT = 0;
+    private static final byte TURN_SEGMENT = 1;
+    private static final byte WAIT_SEGMENT = 2;
+
+    private TrajectorySequenceCache() {
+    }
+
+    /**
+     * Loads a sequence from {@code shipped} or {@code cacheFile}, or builds it live if neither matches.
+     * {@code route} is applied to a fresh builder from {@code factory} once in record-only mode to get
+     * the input hash and marker callbacks, and a second time for real only if no cache matches; that
+     * live build is then written to {@code cacheFile}.
+     *
+     * @param shipped a cache that came with the app, if there is one; it's tried first
+     */
+    public static TrajectorySequence loadOrBuild(
+            @Nullable ByteBuffer shipped,
+            File cacheFile,
+            Supplier<TrajectorySequenceBuilder> factory,
+            Function<TrajectorySequenceBuilder, TrajectorySequenceBuilder> route
+    ) {
+        TrajectorySequenceBuilder recorder = route.apply(factory.get().recordOnly());
+        long inputHash = recorder.getInputHash();
+        List<MarkerCallback> callbacks = recorder.getMarkerCallbacks();
+
+        if (shipped != null) {
+            TrajectorySequence sequence = read(shipped, inputHash, callbacks);
+            if (sequence != null) return sequence;
+        }
+
+        ByteBuffer cached = mapFile(cacheFile);
+        if (cached != null) {
+            TrajectorySequence sequence = read(cached, inputHash, callbacks);
+            if (sequence != null) return sequence;
+        }
+
+        // Routes usually capture their tools in fresh lambdas, so this builder's callbacks are new
+        // objects; the markers have to be numbered against them, not against the recorder's. Both
+        // builders saw the same calls, so the numbers mean the same callbacks when read back.
+        TrajectorySequenceBuilder builder = route.apply(factory.get().compileLookupTables());
+        TrajectorySequence sequence = builder.build();
+        writeFile(cacheFile, sequence, inputHash, builder.getMarkerCallbacks());
+
+        return sequence;
+    }
+
+    /**
+     * Writes a sequence built with lookup tables. Fails if a segment has no table or a marker's callback
+     * isn't in {@code callbacks}.
+     */
+    public static void write(
+            DataOutput out, TrajectorySequence sequence, long inputHash, List<MarkerCallback> callbacks
+    ) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(inputHash);
+        out.writeInt(sequence.size());
+
+        for (int i = 0; i < sequence.size(); i++) {
+            SequenceSegment segment = sequence.get(i);
+
+            if (segment instanceof TrajectorySegment) {
+                TrajectorySegment trajectorySegment = (TrajectorySegment) segment;
+                TrajectoryTable table = trajectorySegment.getTable();
+                if (table == null) {
+                    throw new IOException("Only sequences built with lookup tables can be cached");
+                }
+
+                out.writeByte(TRAJECTORY_SEGMENT);
+                writePath(out, trajectorySegment.getTrajectory().getPath());
+                writeProfile(out, trajectorySegment.getTrajectory().getProfile());
+                table.write(out);
+            } else if (segment instanceof TurnSegment) {
+                TurnSegment turnSegment = (TurnSegment) segment;
+
+                out.writeByte(TURN_SEGMENT);
+                writePose(out, turnSegment.getStartPose());
+                out.writeDouble(turnSegment.getTotalRotation());
+                writeProfile(out, turnSegment.getMotionProfile());
+            } else if (segment instanceof WaitSegment) {
+                out.writeByte(WAIT_SEGMENT);
+                writePose(out, segment.getStartPose());
+                out.writeDouble(segment.getDuration());
+            } else {
+                throw new IOException("Unknown segment type " + segment.getClass().getSimpleName());
+            }
+
+            writeMarkers(out, segment.getSortedMarkers(), callbacks);
+        }
+    }
+
+    /**
+     * Reads a sequence written by {@link #write}, re-attaching marker callbacks by index.
+     *
+     * @return the sequence, or null if the data is malformed, from another version, or was written for
+     * different builder inputs
+     */
+    public static @Nullable TrajectorySequence read(
+            ByteBuffer buffer, long expectedHash, List<MarkerCallback> callbacks
+    ) {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != expectedHash) {
+                return null;
+            }
+
+            int count = buffer.getInt();
+            List<SequenceSegment> segments = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                byte type = buffer.get();
+
+                if (type == TRAJECTORY_SEGMENT) {
+                    Path path = readPath(buffer);
+                    MotionProfile profile = readProfile(buffer);
+                    TrajectoryTable table = TrajectoryTable.read(buffer);
+                    List<TrajectoryMarker> markers = readMarkers(buffer, callbacks);
+
+                    segments.add(new TrajectorySegment(new Trajectory(path, profile, markers), table));
+                } else if (type == TURN_SEGMENT) {
+                    Pose2d startPose = readPose(buffer);
+                    double totalRotation = buffer.getDouble();
+                    MotionProfile profile = readProfile(buffer);
+                    List<TrajectoryMarker> markers = readMarkers(buffer, callbacks);
+
+                    segments.add(new TurnSegment(startPose, totalRotation, profile, markers));
+                } else if (type == WAIT_SEGMENT) {
+                    Pose2d pose = readPose(buffer);
+                    double seconds = buffer.getDouble();
+                    List<TrajectoryMarker> markers = readMarkers(buffer, callbacks);
+
+                    segments.add(new WaitSegment(pose, seconds, markers));
+                } else {
+                    return null;
+                }
+            }
+
+            return new TrajectorySequence(segments);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static @Nullable ByteBuffer mapFile(File file) {
+        if (!file.exists()) return null;
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeFile(
+            File file, TrajectorySequence sequence, long inputHash, List<MarkerCallback> callbacks
+    ) {
+        File folder = file.getAbsoluteFile().getParentFile();
+        //noinspection ResultOfMethodCallIgnored
+        folder.mkdirs();
+
+        // written to the side and renamed so a half-written file is never picked up
+        File tempFile = new File(folder, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            write(out, sequence, inputHash, callbacks);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        tempFile.renameTo(file);
+    }
+
+    private static void writePose(DataOutput out, Pose2d pose) throws IOException {
+        out.writeDouble(pose.getX());
+        out.writeDouble(pose.getY());
+        out.writeDouble(pose.getHeading());
+    }
+
+    private static Pose2d readPose(ByteBuffer buffer) {
+        return new Pose2d(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    private static void writePath(DataOutput out, Path path) throws IOException {
+        double length = path.length();
+        int vertices = Math.max((int) Math.ceil(length / PATH_RESOLUTION), 1) + 1;
+
+        if (length < 1e-6) {
+            throw new IOException("Can't cache a zero-length path");
+        }
+
+        out.writeInt(vertices);
+        for (int i = 0; i < vertices; i++) {
+            writePose(out, path.get(length * i / (vertices - 1)));
+        }
+    }
+
+    private static Path readPath(ByteBuffer buffer) {
+        int vertices = buffer.getInt();
+        List<PathSegment> segments = new ArrayList<>(vertices - 1);
+
+        Pose2d previous = readPose(buffer);
+        for (int i = 1; i < vertices; i++) {
+            Pose2d next = readPose(buffer);
+
+            segments.add(new PathSegment(
+                    new LineSegment(previous.vec(), next.vec()),
+                    new LinearInterpolator(previous.getHeading(), Angle.normDelta(next.getHeading() - previous.getHeading()))
+            ));
+
+            previous = next;
+        }
+
+        return new Path(segments);
+    }
+
+    private static void writeProfile(DataOutput out, MotionProfile profile) throws IOException {
+        List<MotionSegment> segments = profile.getSegments();
+
+        out.writeInt(segments.size());
+        for (MotionSegment segment : segments) {
+            MotionState start = segment.getStart();
+
+            out.writeDouble(start.getX());
+            out.writeDouble(start.getV());
+            out.writeDouble(start.getA());
+            out.writeDouble(start.getJ());
+            out.writeDouble(segment.getDt());
+        }
+    }
+
+    private static MotionProfile readProfile(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<MotionSegment> segments = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            MotionState start = new MotionState(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+            segments.add(new MotionSegment(start, buffer.getDouble()));
+        }
+
+        return new MotionProfile(segments);
+    }
+
+    private static void writeMarkers(
+            DataOutput out, TrajectoryMarker[] markers, List<MarkerCallback> callbacks
+    ) throws IOException {
+        out.writeInt(markers.length);
+
+        for (TrajectoryMarker marker : markers) {
+            int index = indexOf(callbacks, marker.getCallback());
+            if (index == -1) {
+                throw new IOException("Marker callback wasn't added through the builder");
+            }
+
+            out.writeDouble(marker.getTime());
+            out.writeInt(index);
+        }
+    }
+
+    private static List<TrajectoryMarker> readMarkers(ByteBuffer buffer, List<MarkerCallback> callbacks) {
+        int count = buffer.getInt();
+        List<TrajectoryMarker> markers = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            double time = buffer.getDouble();
+            markers.add(new TrajectoryMarker(time, callbacks.get(buffer.getInt())));
+        }
+
+        return markers;
+    }
+
+    // callbacks are lambdas, so identity is the only meaningful comparison
+    private static int indexOf(List<MarkerCallback> callbacks, MarkerCallback callback) {
+        for (int i = 0; i < callbacks.size(); i++) {
+            if (callbacks.get(i) == callback) return i;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,69 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Speculatively builds several candidate trajectory sequences in the background, e.g. one park route per
+ * signal zone while the camera is still reading the signal, so that the chosen one is ready by start.
+ *
+ * Builders run on low-priority daemon threads to leave the vision pipeline and the control loop alone.
+ * Call {@link #get} once the choice is known; it waits for that candidate if it's still building and
+ * cancels the rest. A precomputer is single-use.
+ */
+public class TrajectorySequencePrecomputer<K> {
+    private final ExecutorService executor;
+    private final Map<K, Future<TrajectorySequence>> candidates = new HashMap<>();
+
+    public TrajectorySequencePrecomputer(int threads) {
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "TrajectorySequencePrecomputer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public TrajectorySequencePrecomputer() {
+        // keep a core free for the camera
+        this(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1));
+    }
+
+    /**
+     * Starts building the candidate for the given key.
+     */
+    public void submit(K key, Callable<TrajectorySequence> builder) {
+        candidates.put(key, executor.submit(builder));
+    }
+
+    /**
+     * Returns the candidate for the given key, waiting for it to finish building if necessary, and
+     * abandons every other candidate.
+     */
+    public TrajectorySequence get(K key) throws InterruptedException {
+        Future<TrajectorySequence> candidate = candidates.get(key);
+        if (candidate == null) {
+            throw new IllegalArgumentException("No trajectory sequence was submitted for " + key);
+        }
+
+        try {
+            return candidate.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Building the trajectory sequence for " + key + " failed", e.getCause());
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Abandons every candidate that hasn't finished; call this if the opmode stops before {@link #get}.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -3,29 +3,39 @@ package org.firstinspires.ftc.teamcode.trajectorysequence;
 import androidx.annotation.Nullable;
 
 import com.acmerobotics.dashboard.FtcDashboard;
-import com.acmerobotics.dashboard.canvas.Canvas;
 import com.acmerobotics.dashboard.config.Config;
-import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
 import com.acmerobotics.roadrunner.control.PIDCoefficients;
-import com.acmerobotics.roadrunner.control.PIDFController;
 import com.acmerobotics.roadrunner.drive.DriveSignal;
 import com.acmerobotics.roadrunner.followers.TrajectoryFollower;
 import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.profile.MotionProfile;
+import com.acmerobotics.roadrunner.profile.MotionSegment;
 import com.acmerobotics.roadrunner.profile.MotionState;
+import com.acmerobotics.roadrunner.trajectory.MarkerCallback;
 import com.acmerobotics.roadrunner.trajectory.Trajectory;
 import com.acmerobotics.roadrunner.trajectory.TrajectoryMarker;
+import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryAccelerationConstraint;
+import com.acmerobotics.roadrunner.trajectory.constraints.TrajectoryVelocityConstraint;
 import com.acmerobotics.roadrunner.util.NanoClock;
 
 import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.SequenceSegment;
 import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TrajectorySegment;
 import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.TurnSegment;
 import org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment.WaitSegment;
-import org.firstinspires.ftc.teamcode.util.DashboardUtil;
+import org.firstinspires.ftc.teamcode.util.LoggingUtil;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_ACCEL_HEADING;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_ACCEL_X;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_ACCEL_Y;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_SIZE;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_HEADING;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_X;
+import static org.firstinspires.ftc.teamcode.trajectorysequence.TabulatedHolonomicPIDVAFollower.SIGNAL_VEL_Y;
 
 @Config
 public class TrajectorySequenceRunner {
@@ -37,11 +47,33 @@ public class TrajectorySequenceRunner {
     public static String COLOR_ACTIVE_TURN = "#7c4dff";
     public static String COLOR_ACTIVE_WAIT = "#dd2c00";
 
-    public static int POSE_HISTORY_LIMIT = 100;
+    public static int POSE_HISTORY_LIMIT = 100; // read when the runner is created
+
+    // run marker callbacks on a background thread; wrap a callback with MarkerExecutor.synchronous() to keep it inline
+    public static boolean ASYNC_MARKERS = false;
+
+    // regenerate the rest of a trajectory from the measured pose once the robot is this far off it
+    public static boolean REPLAN = false;
+    public static double REPLAN_ERROR_THRESHOLD = 4; // in
+    public static double REPLAN_HEADING_THRESHOLD = Math.toRadians(15); // rad
+    public static double REPLAN_BUDGET = 0.1; // s, plans that take longer are discarded
+    public static double REPLAN_BACKOFF = 0.5; // s, no new plan is started this long after a discarded one
+    public static double REPLAN_SETTLE_TIME = 0.5; // s, no new plan is requested this long after one is swapped in
+
+    // record a SequenceProfile per run and dump it to a CSV under LoggingUtil.ROAD_RUNNER_FOLDER
+    public static boolean PROFILE_SEGMENTS = true;
+
+    private static final int TELEMETRY_TRANSMISSION_INTERVAL = 25; // ms
+
+    // Road Runner geometry is immutable, so the idle/zero values can be shared instead of reallocated
+    private static final DriveSignal IDLE_SIGNAL = new DriveSignal();
+    private static final Pose2d ZERO_ERROR = new Pose2d();
 
     private final TrajectoryFollower follower;
+    @Nullable
+    private final TabulatedHolonomicPIDVAFollower tabulatedFollower;
 
-    private final PIDFController turnController;
+    private final PrimitivePIDController turnController;
 
     private final NanoClock clock;
 
@@ -49,224 +81,422 @@ public class TrajectorySequenceRunner {
     private double currentSegmentStartTime;
     private int currentSegmentIndex;
     private int lastSegmentIndex;
-
-    private Pose2d lastPoseError = new Pose2d();
-
-    List<TrajectoryMarker> remainingMarkers = new ArrayList<>();
-
-    private final FtcDashboard dashboard;
-    private final LinkedList<Pose2d> poseHistory = new LinkedList<>();
+    private double lastDeltaTime;
+
+    // the error is stored as primitives and only boxed into a Pose2d when it's asked for
+    private double lastErrorX;
+    private double lastErrorY;
+    private double lastErrorHeading;
+    @Nullable
+    private Pose2d lastPoseError = ZERO_ERROR;
+
+    // turn target sampled on primitives, since MotionProfile.get() allocates a MotionState
+    private double turnTargetX;
+    private double turnTargetV;
+    private double turnTargetA;
+
+    // scratch for update(Pose2d, Pose2d), which wraps the array form
+    private final double[] signal = new double[SIGNAL_SIZE];
+    private boolean signalIsIdle;
+
+    // markers of the current segment, pre-sorted; everything before the cursor has already fired
+    private TrajectoryMarker[] currentMarkers = new TrajectoryMarker[0];
+    private int markerCursor;
+    // markers in the sequence before the current segment's; latency is recorded per marker by index
+    private int markerOffset;
+
+    private final MarkerExecutor markerExecutor = new MarkerExecutor();
+
+    @Nullable
+    private TrajectoryReplanner replanner;
+    private Trajectory followedTrajectory;
+    private Object replanOwner;
+    // a new plan starts where the robot was when it was requested, so the follower needs a moment to
+    // take up the distance travelled since before its error means anything again
+    private double replanQuietUntil = Double.NEGATIVE_INFINITY;
+    private long replanCount;
+
+    @Nullable
+    private SequenceProfile currentProfile;
+    @Nullable
+    private volatile SequenceProfile lastProfile;
+    private double lastUpdateTime = Double.NaN;
+
+    private final DashboardPublisher publisher;
 
     public TrajectorySequenceRunner(TrajectoryFollower follower, PIDCoefficients headingPIDCoefficients) {
+        this(follower, headingPIDCoefficients, NanoClock.system());
+    }
+
+    public TrajectorySequenceRunner(TrajectoryFollower follower, PIDCoefficients headingPIDCoefficients, NanoClock clock) {
         this.follower = follower;
+        this.tabulatedFollower = follower instanceof TabulatedHolonomicPIDVAFollower
+                ? (TabulatedHolonomicPIDVAFollower) follower : null;
 
-        turnController = new PIDFController(headingPIDCoefficients);
+        this.clock = clock;
+
+        turnController = new PrimitivePIDController(headingPIDCoefficients, clock);
         turnController.setInputBounds(0, 2 * Math.PI);
 
-        clock = NanoClock.system();
+        publisher = new DashboardPublisher(FtcDashboard.getInstance(), TELEMETRY_TRANSMISSION_INTERVAL, markerExecutor);
+    }
 
-        dashboard = FtcDashboard.getInstance();
-        dashboard.setTelemetryTransmissionInterval(25);
+    /**
+     * Enables replanning with the constraints the drive builds its trajectories with; see {@link #REPLAN}.
+     */
+    public void setReplanConstraints(TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint) {
+        replanner = new TrajectoryReplanner(velConstraint, accelConstraint, clock);
+    }
+
+    // plans on the given executor instead of the worker thread, so tests can plan on the loop thread
+    void setReplanConstraints(
+            TrajectoryVelocityConstraint velConstraint, TrajectoryAccelerationConstraint accelConstraint,
+            Executor executor
+    ) {
+        replanner = new TrajectoryReplanner(velConstraint, accelConstraint, clock, executor);
     }
 
     public void followTrajectorySequenceAsync(TrajectorySequence trajectorySequence) {
+        double now = clock.seconds();
+
+        // a sequence replaced before it ended still gets its profile, marked as interrupted
+        if (currentTrajectorySequence != null) {
+            finishProfile(now, currentSegmentIndex >= currentTrajectorySequence.size());
+        }
+
         currentTrajectorySequence = trajectorySequence;
-        currentSegmentStartTime = clock.seconds();
+        currentSegmentStartTime = now;
         currentSegmentIndex = 0;
         lastSegmentIndex = -1;
+
+        currentProfile = PROFILE_SEGMENTS ? new SequenceProfile(trajectorySequence) : null;
+        lastUpdateTime = Double.NaN;
+
+        markerExecutor.clearLatencies();
     }
 
     public @Nullable
     DriveSignal update(Pose2d poseEstimate, Pose2d poseVelocity) {
-        Pose2d targetPose = null;
-        DriveSignal driveSignal = null;
+        if (!update(poseEstimate, poseVelocity, signal)) return null;
+
+        if (signalIsIdle) return IDLE_SIGNAL;
+
+        return new DriveSignal(
+                new Pose2d(signal[SIGNAL_VEL_X], signal[SIGNAL_VEL_Y], signal[SIGNAL_VEL_HEADING]),
+                new Pose2d(signal[SIGNAL_ACCEL_X], signal[SIGNAL_ACCEL_Y], signal[SIGNAL_ACCEL_HEADING])
+        );
+    }
+
+    /**
+     * Same as {@link #update(Pose2d, Pose2d)}, but writes the drive signal into {@code signal} (laid out
+     * by TabulatedHolonomicPIDVAFollower's SIGNAL_ constants) and returns false where that returns null.
+     *
+     * With a TabulatedHolonomicPIDVAFollower following tabulated trajectories, a tick in the middle of a
+     * trajectory, turn or wait allocates nothing. Segment transitions, markers, replans, the end of a
+     * sequence and other followers still do.
+     */
+    public boolean update(Pose2d poseEstimate, @Nullable Pose2d poseVelocity, double[] signal) {
+        boolean hasSignal = false;
 
-        TelemetryPacket packet = new TelemetryPacket();
-        Canvas fieldOverlay = packet.fieldOverlay();
+        double now = clock.seconds();
 
         SequenceSegment currentSegment = null;
 
         if (currentTrajectorySequence != null) {
             if (currentSegmentIndex >= currentTrajectorySequence.size()) {
-                for (TrajectoryMarker marker : remainingMarkers) {
-                    marker.getCallback().onMarkerReached();
-                }
-
-                remainingMarkers.clear();
+                fireRemainingMarkers();
+                finishProfile(now, true);
 
                 currentTrajectorySequence = null;
             }
 
-            if (currentTrajectorySequence == null)
-                return new DriveSignal();
+            if (currentTrajectorySequence == null) {
+                setIdle(signal);
+                return true;
+            }
 
-            double now = clock.seconds();
             boolean isNewTransition = currentSegmentIndex != lastSegmentIndex;
 
             currentSegment = currentTrajectorySequence.get(currentSegmentIndex);
 
             if (isNewTransition) {
+                if (currentProfile != null && lastSegmentIndex >= 0) {
+                    currentProfile.recordDuration(lastSegmentIndex, now - currentSegmentStartTime);
+                }
+
                 currentSegmentStartTime = now;
                 lastSegmentIndex = currentSegmentIndex;
 
-                for (TrajectoryMarker marker : remainingMarkers) {
-                    marker.getCallback().onMarkerReached();
-                }
+                fireRemainingMarkers();
 
-                remainingMarkers.clear();
+                markerOffset = currentSegmentIndex == 0 ? 0 : markerOffset + currentMarkers.length;
+                currentMarkers = currentSegment.getSortedMarkers();
+                markerCursor = 0;
 
-                remainingMarkers.addAll(currentSegment.getMarkers());
-                Collections.sort(remainingMarkers, (t1, t2) -> Double.compare(t1.getTime(), t2.getTime()));
+                // plans still in flight for the previous segment won't match this one
+                replanOwner = new Object();
             }
 
             double deltaTime = now - currentSegmentStartTime;
+            lastDeltaTime = deltaTime;
 
             if (currentSegment instanceof TrajectorySegment) {
-                Trajectory currentTrajectory = ((TrajectorySegment) currentSegment).getTrajectory();
+                Trajectory currentTrajectory = ((TrajectorySegment) currentSegment).getMarkerlessTrajectory();
+
+                if (isNewTransition) {
+                    follow(currentTrajectory, ((TrajectorySegment) currentSegment).getTable());
+                } else if (replanner != null) {
+                    // the old plan keeps running until a replacement is ready, then the follower
+                    // switches over between two updates
+                    TrajectoryReplanner.Plan plan = replanner.poll(replanOwner);
+                    if (plan != null) {
+                        follow(plan.trajectory, plan.table);
+                        replanQuietUntil = now + REPLAN_SETTLE_TIME;
+                        replanCount++;
+                    }
+                }
 
-                if (isNewTransition)
-                    follower.followTrajectory(currentTrajectory);
+                hasSignal = true;
 
-                if (!follower.isFollowing()) {
+                if (!isFollowing()) {
                     currentSegmentIndex++;
 
-                    driveSignal = new DriveSignal();
+                    setIdle(signal);
                 } else {
-                    driveSignal = follower.update(poseEstimate, poseVelocity);
-                    lastPoseError = follower.getLastError();
-                }
+                    updateFollower(poseEstimate, poseVelocity, signal);
 
-                targetPose = currentTrajectory.get(deltaTime);
+                    if (REPLAN && replanner != null && now >= replanQuietUntil && isOffPath()) {
+                        replanner.request(replanOwner, followedTrajectory, poseEstimate, poseVelocity,
+                                REPLAN_BUDGET, REPLAN_BACKOFF);
+                    }
+                }
             } else if (currentSegment instanceof TurnSegment) {
-                MotionState targetState = ((TurnSegment) currentSegment).getMotionProfile().get(deltaTime);
+                sampleTurnProfile(((TurnSegment) currentSegment).getMotionProfile(), deltaTime);
 
-                turnController.setTargetPosition(targetState.getX());
+                turnController.setTargetPosition(turnTargetX);
 
                 double correction = turnController.update(poseEstimate.getHeading());
 
-                double targetOmega = targetState.getV();
-                double targetAlpha = targetState.getA();
-
-                lastPoseError = new Pose2d(0, 0, turnController.getLastError());
+                setLastError(0, 0, turnController.getLastError());
 
-                Pose2d startPose = currentSegment.getStartPose();
-                targetPose = startPose.copy(startPose.getX(), startPose.getY(), targetState.getX());
-
-                driveSignal = new DriveSignal(
-                        new Pose2d(0, 0, targetOmega + correction),
-                        new Pose2d(0, 0, targetAlpha)
-                );
+                hasSignal = true;
 
                 if (deltaTime >= currentSegment.getDuration()) {
                     currentSegmentIndex++;
-                    driveSignal = new DriveSignal();
+                    setIdle(signal);
+                } else {
+                    signal[SIGNAL_VEL_X] = 0;
+                    signal[SIGNAL_VEL_Y] = 0;
+                    signal[SIGNAL_VEL_HEADING] = turnTargetV + correction;
+                    signal[SIGNAL_ACCEL_X] = 0;
+                    signal[SIGNAL_ACCEL_Y] = 0;
+                    signal[SIGNAL_ACCEL_HEADING] = turnTargetA;
+                    signalIsIdle = false;
                 }
             } else if (currentSegment instanceof WaitSegment) {
-                lastPoseError = new Pose2d();
+                setLastError(0, 0, 0);
+                lastPoseError = ZERO_ERROR;
 
-                targetPose = currentSegment.getStartPose();
-                driveSignal = new DriveSignal();
+                hasSignal = true;
+                setIdle(signal);
 
                 if (deltaTime >= currentSegment.getDuration()) {
                     currentSegmentIndex++;
                 }
             }
 
-            while (remainingMarkers.size() > 0 && deltaTime > remainingMarkers.get(0).getTime()) {
-                remainingMarkers.get(0).getCallback().onMarkerReached();
-                remainingMarkers.remove(0);
+            while (markerCursor < currentMarkers.length && deltaTime > currentMarkers[markerCursor].getTime()) {
+                fireNextMarker();
             }
+
+            if (currentProfile != null && !Double.isNaN(lastUpdateTime)) {
+                currentProfile.recordTick(lastSegmentIndex, now - lastUpdateTime,
+                        lastErrorX, lastErrorY, lastErrorHeading);
+            }
+            lastUpdateTime = now;
         }
 
-        poseHistory.add(poseEstimate);
+        publisher.offer(
+                now, currentTrajectorySequence, currentSegment, lastDeltaTime,
+                poseEstimate.getX(), poseEstimate.getY(), poseEstimate.getHeading(),
+                lastErrorX, lastErrorY, lastErrorHeading
+        );
 
-        if (POSE_HISTORY_LIMIT > -1 && poseHistory.size() > POSE_HISTORY_LIMIT) {
-            poseHistory.removeFirst();
-        }
+        return hasSignal;
+    }
 
-        packet.put("x", poseEstimate.getX());
-        packet.put("y", poseEstimate.getY());
-        packet.put("heading (deg)", Math.toDegrees(poseEstimate.getHeading()));
+    private boolean isFollowing() {
+        // the array update keeps its own end-of-trajectory state; see TabulatedHolonomicPIDVAFollower
+        return tabulatedFollower != null ? !tabulatedFollower.isFinished() : follower.isFollowing();
+    }
 
-        packet.put("xError", getLastPoseError().getX());
-        packet.put("yError", getLastPoseError().getY());
-        packet.put("headingError (deg)", Math.toDegrees(getLastPoseError().getHeading()));
+    private void updateFollower(Pose2d poseEstimate, @Nullable Pose2d poseVelocity, double[] signal) {
+        signalIsIdle = false;
 
-        draw(fieldOverlay, currentTrajectorySequence, currentSegment, targetPose, poseEstimate);
+        if (tabulatedFollower != null) {
+            tabulatedFollower.update(poseEstimate, poseVelocity, signal);
+            setLastError(tabulatedFollower.getLastErrorX(), tabulatedFollower.getLastErrorY(),
+                    tabulatedFollower.getLastErrorHeading());
+            return;
+        }
+
+        DriveSignal driveSignal = follower.update(poseEstimate, poseVelocity);
+        signal[SIGNAL_VEL_X] = driveSignal.getVel().getX();
+        signal[SIGNAL_VEL_Y] = driveSignal.getVel().getY();
+        signal[SIGNAL_VEL_HEADING] = driveSignal.getVel().getHeading();
+        signal[SIGNAL_ACCEL_X] = driveSignal.getAccel().getX();
+        signal[SIGNAL_ACCEL_Y] = driveSignal.getAccel().getY();
+        signal[SIGNAL_ACCEL_HEADING] = driveSignal.getAccel().getHeading();
+
+        Pose2d error = follower.getLastError();
+        setLastError(error.getX(), error.getY(), error.getHeading());
+        lastPoseError = error;
+    }
 
-        dashboard.sendTelemetryPacket(packet);
+    private void setIdle(double[] signal) {
+        for (int i = 0; i < SIGNAL_SIZE; i++) {
+            signal[i] = 0;
+        }
+        signalIsIdle = true;
+    }
 
-        return driveSignal;
+    private void setLastError(double x, double y, double heading) {
+        lastErrorX = x;
+        lastErrorY = y;
+        lastErrorHeading = heading;
+        lastPoseError = null;
     }
 
-    private void draw(
-            Canvas fieldOverlay,
-            TrajectorySequence sequence, SequenceSegment currentSegment,
-            Pose2d targetPose, Pose2d poseEstimate
-    ) {
-        if (sequence != null) {
-            for (int i = 0; i < sequence.size(); i++) {
-                SequenceSegment segment = sequence.get(i);
-
-                if (segment instanceof TrajectorySegment) {
-                    fieldOverlay.setStrokeWidth(1);
-                    fieldOverlay.setStroke(COLOR_INACTIVE_TRAJECTORY);
-
-                    DashboardUtil.drawSampledPath(fieldOverlay, ((TrajectorySegment) segment).getTrajectory().getPath());
-                } else if (segment instanceof TurnSegment) {
-                    Pose2d pose = segment.getStartPose();
-
-                    fieldOverlay.setFill(COLOR_INACTIVE_TURN);
-                    fieldOverlay.fillCircle(pose.getX(), pose.getY(), 2);
-                } else if (segment instanceof WaitSegment) {
-                    Pose2d pose = segment.getStartPose();
-
-                    fieldOverlay.setStrokeWidth(1);
-                    fieldOverlay.setStroke(COLOR_INACTIVE_WAIT);
-                    fieldOverlay.strokeCircle(pose.getX(), pose.getY(), 3);
-                }
+    // MotionProfile.get() on primitives: the state at t, held stationary at either end
+    private void sampleTurnProfile(MotionProfile profile, double t) {
+        List<MotionSegment> segments = profile.getSegments();
+
+        if (t < 0.0) {
+            setTurnTarget(segments.get(0).getStart(), 0.0, true);
+            return;
+        }
+
+        double remainingTime = t;
+        for (int i = 0; i < segments.size(); i++) {
+            MotionSegment segment = segments.get(i);
+            if (remainingTime <= segment.getDt()) {
+                setTurnTarget(segment.getStart(), remainingTime, false);
+                return;
             }
+            remainingTime -= segment.getDt();
         }
 
-        if (currentSegment != null) {
-            if (currentSegment instanceof TrajectorySegment) {
-                Trajectory currentTrajectory = ((TrajectorySegment) currentSegment).getTrajectory();
+        MotionSegment last = segments.get(segments.size() - 1);
+        setTurnTarget(last.getStart(), last.getDt(), true);
+    }
 
-                fieldOverlay.setStrokeWidth(1);
-                fieldOverlay.setStroke(COLOR_ACTIVE_TRAJECTORY);
+    // MotionState.get(dt), without the allocation
+    private void setTurnTarget(MotionState start, double dt, boolean stationary) {
+        double x = start.getX();
+        double v = start.getV();
+        double a = start.getA();
+        double j = start.getJ();
 
-                DashboardUtil.drawSampledPath(fieldOverlay, currentTrajectory.getPath());
-            } else if (currentSegment instanceof TurnSegment) {
-                Pose2d pose = currentSegment.getStartPose();
+        turnTargetX = x + v * dt + a / 2 * dt * dt + j / 6 * dt * dt * dt;
+        turnTargetV = stationary ? 0 : v + a * dt + j / 2 * dt * dt;
+        turnTargetA = stationary ? 0 : a + j * dt;
+    }
 
-                fieldOverlay.setFill(COLOR_ACTIVE_TURN);
-                fieldOverlay.fillCircle(pose.getX(), pose.getY(), 3);
-            } else if (currentSegment instanceof WaitSegment) {
-                Pose2d pose = currentSegment.getStartPose();
+    private void follow(Trajectory trajectory, @Nullable TrajectoryTable table) {
+        followedTrajectory = trajectory;
 
-                fieldOverlay.setStrokeWidth(1);
-                fieldOverlay.setStroke(COLOR_ACTIVE_WAIT);
-                fieldOverlay.strokeCircle(pose.getX(), pose.getY(), 3);
-            }
+        if (follower instanceof TabulatedHolonomicPIDVAFollower) {
+            ((TabulatedHolonomicPIDVAFollower) follower).followTrajectory(trajectory, table);
+        } else {
+            follower.followTrajectory(trajectory);
+        }
+    }
+
+    private boolean isOffPath() {
+        return Math.hypot(lastErrorX, lastErrorY) > REPLAN_ERROR_THRESHOLD
+                || Math.abs(lastErrorHeading) > REPLAN_HEADING_THRESHOLD;
+    }
+
+    private void finishProfile(double now, boolean complete) {
+        SequenceProfile profile = currentProfile;
+        if (profile == null) return;
+
+        currentProfile = null;
+
+        if (lastSegmentIndex >= 0) {
+            profile.recordDuration(lastSegmentIndex, now - currentSegmentStartTime);
         }
+        if (!complete) profile.markIncomplete();
+
+        lastProfile = profile;
+        publisher.setProfile(profile);
+
+        // the next sequence may start on the very next tick, so keep file IO off the loop
+        Thread writer = new Thread(() -> {
+            try {
+                profile.writeCsv(LoggingUtil.getLogFile(String.format(Locale.US,
+                        "TrajectorySequenceProfile-%d%s.csv", System.currentTimeMillis(),
+                        complete ? "" : "-interrupted")));
+            } catch (IOException e) {
+                // diagnostics only; the summary is still on the dashboard
+            }
+        }, "TrajectorySequenceProfile");
+        writer.setDaemon(true);
+        writer.start();
+    }
 
-        if (targetPose != null) {
-            fieldOverlay.setStrokeWidth(1);
-            fieldOverlay.setStroke("#4CAF50");
-            DashboardUtil.drawRobot(fieldOverlay, targetPose);
+    private void fireRemainingMarkers() {
+        while (markerCursor < currentMarkers.length) {
+            fireNextMarker();
         }
+    }
 
-        fieldOverlay.setStroke("#3F51B5");
-        DashboardUtil.drawPoseHistory(fieldOverlay, poseHistory);
+    private void fireNextMarker() {
+        int marker = markerOffset + markerCursor;
+        MarkerCallback callback = currentMarkers[markerCursor++].getCallback();
 
-        fieldOverlay.setStroke("#3F51B5");
-        DashboardUtil.drawRobot(fieldOverlay, poseEstimate);
+        if (ASYNC_MARKERS) {
+            markerExecutor.dispatch(callback, marker);
+        } else {
+            markerExecutor.runInline(callback, marker);
+        }
     }
 
     public Pose2d getLastPoseError() {
+        if (lastPoseError == null) {
+            lastPoseError = new Pose2d(lastErrorX, lastErrorY, lastErrorHeading);
+        }
+
         return lastPoseError;
     }
 
+    /**
+     * Profile of the last sequence that ran to completion or was replaced by another one (see
+     * {@link SequenceProfile#isComplete()}), or null if none has (or profiling is off).
+     */
+    public @Nullable
+    SequenceProfile getLastProfile() {
+        return lastProfile;
+    }
+
+    /**
+     * Number of replans swapped in since the runner was created.
+     */
+    public long getReplanCount() {
+        return replanCount;
+    }
+
+    /**
+     * Number of replans thrown away for running over {@link #REPLAN_BUDGET} or failing to build.
+     */
+    public long getDiscardedReplanCount() {
+        return replanner == null ? 0 : replanner.getDiscardedCount();
+    }
+
+    public MarkerExecutor getMarkerExecutor() {
+        return markerExecutor;
+    }
+
     public boolean isBusy() {
         return currentTrajectorySequence != null;
     }
@@ -0,0 +1,165 @@
+package org.firstinspires.ftc.teamcode.trajectorysequence;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+import com.acmerobotics.roadrunner.util.Angle;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Dense time-indexed samples of a {@link Trajectory}'s field-frame pose, velocity and acceleration.
+ * Lookups are a constant-time index computation plus a linear interpolation between neighbouring
+ * samples, instead of a walk through the trajectory's path and motion profile.
+ *
+ * With a sample spacing of dt, linear interpolation of a quantity f is off by at most dt^2 / 8 * max|f''|
+ * wherever f is smooth. For the default 10 ms spacing that means:
+ * <ul>
+ *     <li>position: dt^2 / 8 * max accel, e.g. under 0.001 in at 60 in/s^2</li>
+ *     <li>heading: dt^2 / 8 * max angular accel, e.g. under 0.0001 rad at 8 rad/s^2</li>
+ *     <li>velocity: Road Runner profiles have jumps in acceleration, so within the one interval that
+ *     straddles a jump the error can reach dt / 4 * |jump|, e.g. 0.3 in/s for a 60 to -60 in/s^2 switch</li>
+ *     <li>acceleration: exact between jumps; within the interval containing a jump it blends linearly
+ *     from one side to the other</li>
+ * </ul>
+ */
+public class TrajectoryTable {
+    public static final double DEFAULT_RESOLUTION = 0.01; // s
+
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int HEADING = 2;
+    public static final int VEL_X = 3;
+    public static final int VEL_Y = 4;
+    public static final int VEL_HEADING = 5;
+    public static final int ACCEL_X = 6;
+    public static final int ACCEL_Y = 7;
+    public static final int ACCEL_HEADING = 8;
+    public static final int STATE_SIZE = 9;
+
+    private final double resolution;
+    private final double duration;
+    private final int samples;
+
+    // row-major: STATE_SIZE values per sample
+    private final double[] table;
+
+    private TrajectoryTable(double resolution, double duration, int samples, double[] table) {
+        this.resolution = resolution;
+        this.duration = duration;
+        this.samples = samples;
+        this.table = table;
+    }
+
+    /**
+     * Samples a trajectory every {@code resolution} seconds, plus once more at its exact end.
+     */
+    public static TrajectoryTable sample(Trajectory trajectory, double resolution) {
+        double duration = trajectory.duration();
+        int samples = (int) Math.ceil(duration / resolution) + 1;
+        double[] table = new double[samples * STATE_SIZE];
+
+        for (int i = 0; i < samples; i++) {
+            double t = Math.min(i * resolution, duration);
+
+            Pose2d pose = trajectory.get(t);
+            Pose2d vel = trajectory.velocity(t);
+            Pose2d accel = trajectory.acceleration(t);
+
+            int base = i * STATE_SIZE;
+            table[base + X] = pose.getX();
+            table[base + Y] = pose.getY();
+            table[base + HEADING] = pose.getHeading();
+            table[base + VEL_X] = vel.getX();
+            table[base + VEL_Y] = vel.getY();
+            table[base + VEL_HEADING] = vel.getHeading();
+            table[base + ACCEL_X] = accel.getX();
+            table[base + ACCEL_Y] = accel.getY();
+            table[base + ACCEL_HEADING] = accel.getHeading();
+        }
+
+        return new TrajectoryTable(resolution, duration, samples, table);
+    }
+
+    public static TrajectoryTable sample(Trajectory trajectory) {
+        return sample(trajectory, DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Writes the table in the layout {@link #read(ByteBuffer)} expects.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeDouble(resolution);
+        out.writeDouble(duration);
+        out.writeInt(samples);
+
+        for (double value : table) {
+            out.writeDouble(value);
+        }
+    }
+
+    static TrajectoryTable read(ByteBuffer buffer) {
+        double resolution = buffer.getDouble();
+        double duration = buffer.getDouble();
+        int samples = buffer.getInt();
+
+        double[] table = new double[samples * STATE_SIZE];
+        buffer.asDoubleBuffer().get(table);
+        buffer.position(buffer.position() + table.length * 8);
+
+        return new TrajectoryTable(resolution, duration, samples, table);
+    }
+
+    public double duration() {
+        return duration;
+    }
+
+    public double resolution() {
+        return resolution;
+    }
+
+    /**
+     * Interpolates the full state at time t (clamped to the trajectory) into {@code state}, which must
+     * hold at least {@link #STATE_SIZE} values and is indexed by the constants on this class.
+     */
+    public void get(double t, double[] state) {
+        if (t <= 0) {
+            System.arraycopy(table, 0, state, 0, STATE_SIZE);
+            return;
+        }
+
+        int i = (int) (t / resolution);
+        if (i >= samples - 1) {
+            System.arraycopy(table, (samples - 1) * STATE_SIZE, state, 0, STATE_SIZE);
+            return;
+        }
+
+        // the last interval can be shorter than the rest since the final sample sits exactly on the end
+        double t0 = i * resolution;
+        double t1 = Math.min(t0 + resolution, duration);
+        double fraction = Math.min((t - t0) / (t1 - t0), 1.0);
+
+        int base0 = i * STATE_SIZE;
+        int base1 = base0 + STATE_SIZE;
+        for (int j = 0; j < STATE_SIZE; j++) {
+            double v0 = table[base0 + j];
+            double v1 = table[base1 + j];
+
+            if (j == HEADING) {
+                state[j] = Angle.norm(v0 + fraction * Angle.normDelta(v1 - v0));
+            } else {
+                state[j] = v0 + fraction * (v1 - v0);
+            }
+        }
+    }
+
+    /**
+     * Allocating convenience equivalent of {@link Trajectory#get(double)}.
+     */
+    public Pose2d get(double t) {
+        double[] state = new double[STATE_SIZE];
+        get(t, state);
+        return new Pose2d(state[X], state[Y], state[HEADING]);
+    }
+}
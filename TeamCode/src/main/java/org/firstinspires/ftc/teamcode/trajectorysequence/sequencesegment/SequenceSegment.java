@@ -3,12 +3,15 @@ package org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment;
 import com.acmerobotics.roadrunner.geometry.Pose2d;
 import com.acmerobotics.roadrunner.trajectory.TrajectoryMarker;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public abstract class SequenceSegment {
     private final double duration;
     private final Pose2d startPose;
     private final Pose2d endPose;
+    private final TrajectoryMarker[] sortedMarkers;
     private final List<TrajectoryMarker> markers;
 
     protected SequenceSegment(
@@ -19,7 +22,11 @@ public abstract class SequenceSegment {
         this.duration = duration;
         this.startPose = startPose;
         this.endPose = endPose;
-        this.markers = markers;
+
+        // sorted once here so the runner can walk them with a cursor instead of re-sorting every transition
+        this.sortedMarkers = markers.toArray(new TrajectoryMarker[0]);
+        Arrays.sort(sortedMarkers, (t1, t2) -> Double.compare(t1.getTime(), t2.getTime()));
+        this.markers = Collections.unmodifiableList(Arrays.asList(sortedMarkers));
     }
 
     public double getDuration() {
@@ -37,4 +44,11 @@ public abstract class SequenceSegment {
     public List<TrajectoryMarker> getMarkers() {
         return markers;
     }
+
+    /**
+     * Markers in ascending time order. The array is shared and must not be modified.
+     */
+    public TrajectoryMarker[] getSortedMarkers() {
+        return sortedMarkers;
+    }
 }
@@ -1,20 +1,48 @@
 package org.firstinspires.ftc.teamcode.trajectorysequence.sequencesegment;
 
+import androidx.annotation.Nullable;
+
 import com.acmerobotics.roadrunner.trajectory.Trajectory;
 
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectoryTable;
+
 import java.util.Collections;
 
 public final class TrajectorySegment extends SequenceSegment {
     private final Trajectory trajectory;
+    private final Trajectory markerlessTrajectory;
+    private final TrajectoryTable table;
 
-    public TrajectorySegment(Trajectory trajectory) {
-        // Note: Markers are already stored in the `Trajectory` itself.
-        // This class should not hold any markers
-        super(trajectory.duration(), trajectory.start(), trajectory.end(), Collections.emptyList());
+    public TrajectorySegment(Trajectory trajectory, @Nullable TrajectoryTable table) {
+        // Note: The segment takes over the markers stored in the `Trajectory` so the runner can fire them
+        // the same way as turn and wait markers. The follower is handed a copy without any markers.
+        super(trajectory.duration(), trajectory.start(), trajectory.end(), trajectory.getMarkers());
         this.trajectory = trajectory;
+        this.markerlessTrajectory = trajectory.getMarkers().isEmpty()
+                ? trajectory
+                : new Trajectory(trajectory.getPath(), trajectory.getProfile(), Collections.emptyList());
+        this.table = table;
+    }
+
+    public TrajectorySegment(Trajectory trajectory) {
+        this(trajectory, null);
     }
 
     public Trajectory getTrajectory() {
         return this.trajectory;
     }
+
+    /**
+     * The trajectory without its markers, for handing to a follower while the runner fires the markers.
+     */
+    public Trajectory getMarkerlessTrajectory() {
+        return this.markerlessTrajectory;
+    }
+
+    /**
+     * Precompiled samples of the trajectory, if the sequence was built with lookup tables.
+     */
+    public @Nullable TrajectoryTable getTable() {
+        return this.table;
+    }
 }
@@ -1,5 +1,7 @@
 package org.firstinspires.ftc.teamcode.util;
 
+import android.content.res.AssetFileDescriptor;
+
 import androidx.annotation.Nullable;
 
 import com.acmerobotics.roadrunner.trajectory.Trajectory;
@@ -9,14 +11,26 @@ import com.acmerobotics.roadrunner.trajectory.config.TrajectoryConfigManager;
 import com.acmerobotics.roadrunner.trajectory.config.TrajectoryGroupConfig;
 
 import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequence;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceBuilder;
+import org.firstinspires.ftc.teamcode.trajectorysequence.TrajectorySequenceCache;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Set of utilities for loading trajectories from assets (the plugin save location).
  */
 public class AssetsTrajectoryManager {
+    // kept out of the RoadRunner folder since LoggingUtil prunes that
+    public static final File SEQUENCE_CACHE_FOLDER =
+            new File(AppUtil.ROOT_FOLDER + "/TrajectoryCache/");
 
     /**
      * Loads the group config.
@@ -67,4 +81,33 @@ public class AssetsTrajectoryManager {
         }
         return builder.build();
     }
+
+    /**
+     * Loads the trajectory sequence with the given name from its binary cache, or builds it live if no
+     * cache matches; see {@link TrajectorySequenceCache#loadOrBuild}. {@code trajectory/<name>.tsq} in
+     * the assets is tried first, then the on-robot cache file. A live build refreshes the on-robot cache
+     * file; copy it into the assets to ship it with the app.
+     */
+    public static TrajectorySequence loadOrBuild(
+            String name,
+            Supplier<TrajectorySequenceBuilder> factory,
+            Function<TrajectorySequenceBuilder, TrajectorySequenceBuilder> route
+    ) {
+        return TrajectorySequenceCache.loadOrBuild(
+                mapAsset("trajectory/" + name + ".tsq"),
+                new File(SEQUENCE_CACHE_FOLDER, name + ".tsq"),
+                factory, route
+        );
+    }
+
+    // assets are only mappable when stored uncompressed, see noCompress in build.gradle
+    private static @Nullable ByteBuffer mapAsset(String path) {
+        try (AssetFileDescriptor descriptor = AppUtil.getDefContext().getAssets().openFd(path);
+             FileInputStream inputStream = descriptor.createInputStream()) {
+            return inputStream.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength());
+        } catch (IOException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,128 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loop-scoped bulk caching for every hub on the robot.
+ *
+ * In AUTO mode a hub does a fresh bulk read whenever a value is asked for twice, so a loop that reads
+ * the same motor from two places pays for two transactions. Here every hub is put in MANUAL mode
+ * instead and {@link #clear} is called exactly once per control tick. After that, the first
+ * {@link #read} of a hub fetches its whole bulk snapshot, and every other read in the tick, from any
+ * subsystem, is served from it without touching the hub. Nothing refreshes the snapshot until the next
+ * {@link #clear}, so whoever owns the loop must call it before reading.
+ *
+ * The transaction counter counts the bulk reads this cache actually makes. A motor read on a hub that
+ * wasn't {@link #read} first this tick makes the SDK fetch the snapshot behind our back, which isn't
+ * counted, so readers should go through {@link #read} before touching their motors.
+ */
+public class BulkReadCache {
+    /**
+     * The part of a {@link LynxModule} the cache needs, so it can be driven by a fake hub off the robot.
+     */
+    public interface Hub {
+        void setBulkCachingMode(LynxModule.BulkCachingMode mode);
+
+        void clearBulkCache();
+
+        /**
+         * Does one bulk read, replacing the hub's cached snapshot.
+         */
+        void readBulkData();
+    }
+
+    private final List<Hub> hubs;
+    private final boolean[] fresh;
+
+    private long transactions;
+    private long ticks;
+
+    public BulkReadCache(List<Hub> hubs) {
+        this.hubs = hubs;
+        this.fresh = new boolean[hubs.size()];
+
+        for (Hub hub : hubs) {
+            hub.setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+        }
+    }
+
+    public static BulkReadCache forAllHubs(HardwareMap hardwareMap) {
+        List<Hub> hubs = new ArrayList<>();
+        for (LynxModule module : hardwareMap.getAll(LynxModule.class)) {
+            hubs.add(new Hub() {
+                @Override
+                public void setBulkCachingMode(LynxModule.BulkCachingMode mode) {
+                    module.setBulkCachingMode(mode);
+                }
+
+                @Override
+                public void clearBulkCache() {
+                    module.clearBulkCache();
+                }
+
+                @Override
+                public void readBulkData() {
+                    module.getBulkData();
+                }
+            });
+        }
+
+        return new BulkReadCache(hubs);
+    }
+
+    /**
+     * Starts a new tick: drops every hub's snapshot so the next {@link #read} fetches a fresh one.
+     */
+    public void clear() {
+        for (int i = 0; i < hubs.size(); i++) {
+            hubs.get(i).clearBulkCache();
+            fresh[i] = false;
+        }
+
+        ticks++;
+    }
+
+    /**
+     * Makes sure every hub has this tick's snapshot, doing a bulk read on each one that doesn't yet.
+     */
+    public void read() {
+        for (int i = 0; i < hubs.size(); i++) {
+            read(i);
+        }
+    }
+
+    /**
+     * Makes sure hub {@code index}, in {@code hardwareMap.getAll(LynxModule.class)} order, has this
+     * tick's snapshot.
+     */
+    public void read(int index) {
+        if (fresh[index]) return;
+
+        hubs.get(index).readBulkData();
+        fresh[index] = true;
+        transactions++;
+    }
+
+    public int getHubCount() {
+        return hubs.size();
+    }
+
+    /**
+     * Bulk reads made since the cache was created.
+     */
+    public long getTransactionCount() {
+        return transactions;
+    }
+
+    public long getTickCount() {
+        return ticks;
+    }
+
+    public double getTransactionsPerTick() {
+        return ticks == 0 ? 0.0 : (double) transactions / ticks;
+    }
+}
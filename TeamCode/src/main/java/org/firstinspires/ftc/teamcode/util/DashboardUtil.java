@@ -5,7 +5,11 @@ import com.acmerobotics.roadrunner.geometry.Pose2d;
 import com.acmerobotics.roadrunner.geometry.Vector2d;
 import com.acmerobotics.roadrunner.path.Path;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Set of helper functions for drawing Road Runner paths and trajectories on dashboard canvases.
@@ -14,6 +18,24 @@ public class DashboardUtil {
     private static final double DEFAULT_RESOLUTION = 2.0; // distance units; presumed inches
     private static final double ROBOT_RADIUS = 9; // in
 
+    // paths are immutable, so each one only needs to be sampled once; entries go away with their path
+    private static final Map<Path, SampledPath> SAMPLED_PATHS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Polyline sampled from a path at a fixed resolution.
+     */
+    private static class SampledPath {
+        final double resolution;
+        final double[] xPoints;
+        final double[] yPoints;
+
+        SampledPath(double resolution, double[] xPoints, double[] yPoints) {
+            this.resolution = resolution;
+            this.xPoints = xPoints;
+            this.yPoints = yPoints;
+        }
+    }
 
     public static void drawPoseHistory(Canvas canvas, List<Pose2d> poseHistory) {
         double[] xPoints = new double[poseHistory.size()];
@@ -26,7 +48,27 @@ public class DashboardUtil {
         canvas.strokePolyline(xPoints, yPoints);
     }
 
-    public static void drawSampledPath(Canvas canvas, Path path, double resolution) {
+    public static void drawPoseHistory(Canvas canvas, PoseHistory poseHistory) {
+        drawPoseHistory(canvas, poseHistory, new double[poseHistory.size()], new double[poseHistory.size()]);
+    }
+
+    /**
+     * Draws a pose history through caller-owned arrays of equal length, at least the history's size,
+     * instead of fresh ones. The polyline always spans the whole arrays, so the slots past the newest
+     * pose are filled with it and draw nothing visible. The canvas holds on to the arrays until its
+     * packet is sent, so they mustn't be refilled before then.
+     */
+    public static void drawPoseHistory(Canvas canvas, PoseHistory poseHistory, double[] xPoints, double[] yPoints) {
+        int size = poseHistory.size();
+        if (size == 0) return;
+
+        poseHistory.copyPositions(xPoints, yPoints, size);
+        Arrays.fill(xPoints, size, xPoints.length, xPoints[size - 1]);
+        Arrays.fill(yPoints, size, yPoints.length, yPoints[size - 1]);
+        canvas.strokePolyline(xPoints, yPoints);
+    }
+
+    private static SampledPath samplePath(Path path, double resolution) {
         int samples = (int) Math.ceil(path.length() / resolution);
         double[] xPoints = new double[samples];
         double[] yPoints = new double[samples];
@@ -37,7 +79,20 @@ public class DashboardUtil {
             xPoints[i] = pose.getX();
             yPoints[i] = pose.getY();
         }
-        canvas.strokePolyline(xPoints, yPoints);
+        return new SampledPath(resolution, xPoints, yPoints);
+    }
+
+    /**
+     * Draws a path, sampling it only the first time it's drawn at the given resolution. The cached arrays
+     * are handed to the canvas as-is and must never be modified.
+     */
+    public static void drawSampledPath(Canvas canvas, Path path, double resolution) {
+        SampledPath sampledPath = SAMPLED_PATHS.get(path);
+        if (sampledPath == null || sampledPath.resolution != resolution) {
+            sampledPath = samplePath(path, resolution);
+            SAMPLED_PATHS.put(path, sampledPath);
+        }
+        canvas.strokePolyline(sampledPath.xPoints, sampledPath.yPoints);
     }
 
     public static void drawSampledPath(Canvas canvas, Path path) {
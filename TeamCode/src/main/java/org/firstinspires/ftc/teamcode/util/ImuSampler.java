@@ -0,0 +1,143 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import androidx.annotation.Nullable;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads a BNO055's heading and heading rate on a background thread so the control loop doesn't wait on
+ * the I2C transactions.
+ *
+ * The sampler thread publishes an immutable {@link Sample} at a fixed rate and the loop takes the newest
+ * one without blocking. A sample older than the stale timeout is never handed out; {@link #latest} reads
+ * the IMU synchronously instead, so a stalled sampler costs loop time rather than feeding the localizer
+ * old headings. Like the dashboard publisher, the thread starts on first use and stops by itself once
+ * nobody has asked for a sample in a while, so it doesn't outlive the opmode that created it.
+ */
+public class ImuSampler {
+    private static final long IDLE_TIMEOUT_NS = 1_000_000_000L;
+
+    /**
+     * One reading of the IMU.
+     */
+    public static final class Sample {
+        public final double heading; // rad
+        public final double headingVelocity; // rad/s
+        public final long timestamp; // System.nanoTime()
+
+        Sample(double heading, double headingVelocity, long timestamp) {
+            this.heading = heading;
+            this.headingVelocity = headingVelocity;
+            this.timestamp = timestamp;
+        }
+
+        public double age() {
+            return (System.nanoTime() - timestamp) / 1e9;
+        }
+    }
+
+    private final BNO055IMU imu;
+    private final double rate;
+    private final double staleTimeout;
+
+    private final AtomicReference<Sample> latestSample = new AtomicReference<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile long lastRequestTime;
+    private volatile long staleCount;
+
+    /**
+     * @param rate samples per second
+     * @param staleTimeout age in seconds past which a sample is no longer used
+     */
+    public ImuSampler(BNO055IMU imu, double rate, double staleTimeout) {
+        this.imu = imu;
+        this.rate = rate;
+        this.staleTimeout = staleTimeout;
+    }
+
+    /**
+     * Newest sample, read synchronously if the sampler hasn't published a fresh enough one.
+     */
+    public Sample latest() {
+        lastRequestTime = System.nanoTime();
+
+        if (!running.get() && running.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::run, "ImuSampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Sample sample = latestSample.get();
+        if (sample == null || sample.age() > staleTimeout) {
+            staleCount++;
+
+            sample = read();
+            latestSample.set(sample);
+        }
+
+        return sample;
+    }
+
+    /**
+     * Newest published sample however old it is, or null if there hasn't been one yet. Never blocks.
+     */
+    public @Nullable
+    Sample peek() {
+        return latestSample.get();
+    }
+
+    public boolean isStale() {
+        Sample sample = latestSample.get();
+        return sample == null || sample.age() > staleTimeout;
+    }
+
+    /**
+     * Number of times {@link #latest} had to fall back to a synchronous read.
+     */
+    public long getStaleCount() {
+        return staleCount;
+    }
+
+    private Sample read() {
+        double heading = imu.getAngularOrientation().firstAngle;
+        double headingVelocity = imu.getAngularVelocity().zRotationRate;
+
+        return new Sample(heading, headingVelocity, System.nanoTime());
+    }
+
+    private void run() {
+        long period = (long) (1e9 / rate);
+        long next = System.nanoTime();
+
+        while (true) {
+            // the opmode that owned this sampler is most likely gone; latest() restarts us if not
+            if (System.nanoTime() - lastRequestTime > IDLE_TIMEOUT_NS) {
+                running.set(false);
+
+                if (System.nanoTime() - lastRequestTime > IDLE_TIMEOUT_NS || !running.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+
+            latestSample.set(read());
+
+            next += period;
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay / 1_000_000, (int) (delay % 1_000_000));
+                } catch (InterruptedException e) {
+                    running.set(false);
+                    return;
+                }
+            } else {
+                // the reads are slower than the rate; don't try to catch up
+                next = System.nanoTime();
+            }
+        }
+    }
+}
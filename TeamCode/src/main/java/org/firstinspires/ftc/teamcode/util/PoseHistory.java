@@ -0,0 +1,134 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+
+/**
+ * Fixed-capacity ring buffer of timestamped poses, stored as parallel primitive arrays so that
+ * recording a pose never allocates. Once full, each new pose overwrites the oldest one.
+ *
+ * Indices passed to the getters run from 0 (oldest) to {@link #size()} - 1 (newest). This class is not
+ * thread-safe; it should be owned by a single thread.
+ */
+public class PoseHistory {
+    private final double[] x;
+    private final double[] y;
+    private final double[] heading;
+    private final double[] timestamp;
+
+    private int start;
+    private int size;
+
+    public PoseHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        x = new double[capacity];
+        y = new double[capacity];
+        heading = new double[capacity];
+        timestamp = new double[capacity];
+    }
+
+    /**
+     * Records a pose, evicting the oldest one if the buffer is full.
+     */
+    public void add(double x, double y, double heading, double timestamp) {
+        int capacity = capacity();
+
+        int slot;
+        if (size < capacity) {
+            slot = (start + size) % capacity;
+            size++;
+        } else {
+            slot = start;
+            start = (start + 1) % capacity;
+        }
+
+        this.x[slot] = x;
+        this.y[slot] = y;
+        this.heading[slot] = heading;
+        this.timestamp[slot] = timestamp;
+    }
+
+    public void add(Pose2d pose, double timestamp) {
+        add(pose.getX(), pose.getY(), pose.getHeading(), timestamp);
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return x.length;
+    }
+
+    private int slot(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        }
+
+        return (start + i) % capacity();
+    }
+
+    public double getX(int i) {
+        return x[slot(i)];
+    }
+
+    public double getY(int i) {
+        return y[slot(i)];
+    }
+
+    public double getHeading(int i) {
+        return heading[slot(i)];
+    }
+
+    public double getTimestamp(int i) {
+        return timestamp[slot(i)];
+    }
+
+    public Pose2d getPose(int i) {
+        int slot = slot(i);
+        return new Pose2d(x[slot], y[slot], heading[slot]);
+    }
+
+    /**
+     * Finds the newest pose recorded at or before the given time, assuming poses were added in
+     * timestamp order.
+     *
+     * @return index of that pose, or -1 if every recorded pose is newer
+     */
+    public int floorIndex(double time) {
+        int lo = 0;
+        int hi = size - 1;
+        int result = -1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (getTimestamp(mid) <= time) {
+                result = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Copies the most recent {@code count} x and y coordinates, oldest first, into the given arrays.
+     */
+    public void copyPositions(double[] xDest, double[] yDest, int count) {
+        int first = size - count;
+        for (int i = 0; i < count; i++) {
+            int slot = slot(first + i);
+            xDest[i] = x[slot];
+            yDest[i] = y[slot];
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands values from one producer thread to one consumer thread without either ever waiting on the other.
+ *
+ * There are three slots: the producer owns one, the consumer owns one, and the third sits in the middle.
+ * Publishing fills the producer's slot and swaps it with the middle one; reading swaps the consumer's slot
+ * with the middle one if something new has been published since. Both swaps are a single atomic exchange,
+ * so neither side can block the other, and the consumer always gets the newest value; older ones are
+ * simply overwritten. The values themselves should be immutable, since the consumer may keep a value after
+ * its slot has been handed back.
+ *
+ * Only one thread may publish and only one thread may read, though they can be the same thread.
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 0b011;
+    private static final int FRESH = 0b100;
+
+    private final Object[] slots = new Object[3];
+
+    // index of the middle slot, plus FRESH if it was published to since the consumer last took it
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    private int back = 0; // producer's slot
+    private int front = 2; // consumer's slot
+
+    public TripleBuffer(T initial) {
+        slots[0] = initial;
+        slots[1] = initial;
+        slots[2] = initial;
+    }
+
+    /**
+     * Makes {@code value} the newest value. Producer thread only.
+     */
+    public void publish(T value) {
+        slots[back] = value;
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Newest published value, or the initial one if nothing has been published yet. Consumer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    public T read() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+
+        return (T) slots[front];
+    }
+
+    /**
+     * Whether something has been published since the last {@link #read}.
+     */
+    public boolean hasFresh() {
+        return (middle.get() & FRESH) != 0;
+    }
+}